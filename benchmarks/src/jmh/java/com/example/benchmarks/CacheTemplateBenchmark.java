@@ -0,0 +1,49 @@
+package com.example.benchmarks;
+
+import com.performance.model.Product;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CacheTemplate.get on the hit and miss paths, one thread, keys walked round-robin.
+ *
+ *  - hit:   the product is cached.
+ *  - miss:  the product is evicted first, then get() loads it from the source and writes it back.
+ *  - evict: the eviction alone, subtract it from miss to get the miss path itself.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CacheTemplateBenchmark {
+
+    private int id;
+
+    private int nextId(ProductBackend backend){
+        this.id = this.id % backend.products + 1;
+        return this.id;
+    }
+
+    @Benchmark
+    public Product hit(ProductBackend backend){
+        return backend.cache.get(nextId(backend)).block();
+    }
+
+    @Benchmark
+    public Product miss(ProductBackend backend){
+        int productId = nextId(backend);
+        backend.evict.apply(productId).block();
+        return backend.cache.get(productId).block();
+    }
+
+    @Benchmark
+    public Boolean evict(ProductBackend backend){
+        return backend.evict.apply(nextId(backend)).block();
+    }
+
+}
@@ -0,0 +1,87 @@
+package com.example.benchmarks;
+
+import com.example.templates.CacheEntry;
+import com.example.templates.CacheTemplate;
+import com.performance.model.Product;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * CacheTemplate over a ConcurrentHashMap (cache) and an InMemoryProductSource (database):
+ * the template's own overhead (Reactor assembly, entry checks, counters) without any I/O.
+ */
+public class InMemoryProductCache extends CacheTemplate<Integer, Product> {
+
+    private final InMemoryProductSource source;
+    private final Map<Integer, CacheEntry<Product>> cache = new ConcurrentHashMap<>();
+
+    public InMemoryProductCache(InMemoryProductSource source) {
+        this.source = source;
+    }
+
+    public Mono<Boolean> evict(Integer id){
+        return deleteFromCache(id);
+    }
+
+    @Override
+    protected Mono<Product> insertSource(Product product) {
+        return this.source.save(product);
+    }
+
+    @Override
+    protected Mono<Product> insertCache(Product product) {
+        return updateCache(product.getId(), product);
+    }
+
+    @Override
+    protected Mono<Product> getFromSource(Integer id) {
+        return this.source.get(id);
+    }
+
+    @Override
+    protected Mono<Product> getFromCache(Integer id) {
+        return getEntryFromCache(id)
+                .mapNotNull(CacheEntry::getValue);
+    }
+
+    @Override
+    protected Mono<CacheEntry<Product>> getEntryFromCache(Integer id) {
+        return Mono.justOrEmpty(this.cache.get(id));
+    }
+
+    @Override
+    protected Mono<Product> updateSource(Integer id, Product product) {
+        return this.source.save(product);
+    }
+
+    @Override
+    protected Mono<Product> updateCache(Integer id, Product product) {
+        return updateEntryCache(id, newEntry(product, 0));
+    }
+
+    @Override
+    protected Mono<Product> updateEntryCache(Integer id, CacheEntry<Product> entry) {
+        return Mono.fromSupplier(() -> {
+            this.cache.put(id, entry);
+            return entry.getValue();
+        });
+    }
+
+    @Override
+    protected Mono<Void> updateTombstoneCache(Integer id, CacheEntry<Product> tombstone) {
+        return Mono.fromRunnable(() -> this.cache.put(id, tombstone));
+    }
+
+    @Override
+    protected Mono<Boolean> deleteFromSource(Integer id) {
+        return this.source.delete(id);
+    }
+
+    @Override
+    protected Mono<Boolean> deleteFromCache(Integer id) {
+        return Mono.fromSupplier(() -> this.cache.remove(id) != null);
+    }
+
+}
@@ -0,0 +1,53 @@
+package com.example.benchmarks;
+
+import com.performance.model.Product;
+import reactor.core.publisher.Mono;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Stands in for Postgres: the products table as a map, answered synchronously,
+ * so the benchmarks measure the cache path and not the database.
+ */
+public class InMemoryProductSource {
+
+    private final Map<Integer, Product> rows = new ConcurrentHashMap<>();
+
+    public InMemoryProductSource(int products) {
+        for (int id = 1; id <= products; id++) {
+            this.rows.put(id, new Product(id, "product-" + id, id * 1.5));
+        }
+    }
+
+    public Mono<Product> get(Integer id){
+        return Mono.justOrEmpty(this.rows.get(id));
+    }
+
+    public Mono<Map<Integer, Product>> getAll(Set<Integer> ids){
+        return Mono.fromSupplier(() -> {
+            Map<Integer, Product> found = new HashMap<>();
+            ids.forEach(id -> {
+                Product product = this.rows.get(id);
+                if (product != null) {
+                    found.put(id, product);
+                }
+            });
+            return found;
+        });
+    }
+
+    public Mono<Product> save(Product product){
+        return Mono.fromSupplier(() -> {
+            this.rows.put(product.getId(), product);
+            return product;
+        });
+    }
+
+    public Mono<Boolean> delete(Integer id){
+        return Mono.fromSupplier(() -> this.rows.remove(id) != null);
+    }
+
+}
@@ -0,0 +1,77 @@
+package com.example.benchmarks;
+
+import com.example.templates.CacheTemplate;
+import com.performance.model.Product;
+import com.performance.util.ProductCacheCodec;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.redisson.Redisson;
+import org.redisson.api.RedissonClient;
+import org.redisson.config.Config;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+
+/**
+ * The product cache under test, shared by all benchmark threads:
+ *  - memory: InMemoryProductCache, reproducible anywhere, measures the template alone.
+ *  - redis:  RedisProductCache, the real `product` hash on -Dbenchmark.redis (default redis://127.0.0.1:6379),
+ *            end-to-end GET latency per codec.
+ * The source is always in memory, Postgres is never needed.
+ */
+@State(Scope.Benchmark)
+public class ProductBackend {
+
+    @Param({"memory"}) // -Pbackend=redis
+    public String backend;
+
+    @Param({"1000"})
+    public int products;
+
+    // Storage format of the redis backend, the memory backend keeps objects
+    @Param({"JSON"}) // -Pcodec=JSON,BINARY,AVRO
+    public ProductCacheCodec codec;
+
+    public CacheTemplate<Integer, Product> cache;
+    public Function<Integer, Mono<Boolean>> evict;
+
+    private RedissonClient client;
+
+    @Setup(Level.Trial)
+    public void setup(){
+        InMemoryProductSource source = new InMemoryProductSource(this.products);
+        if ("redis".equals(this.backend)) {
+            Config config = new Config();
+            config.useSingleServer()
+                    .setAddress(System.getProperty("benchmark.redis", "redis://127.0.0.1:6379"));
+            this.client = Redisson.create(config);
+            RedisProductCache redisCache = new RedisProductCache(source, this.client.reactive(), this.codec);
+            this.cache = redisCache;
+            this.evict = redisCache::evict;
+        } else {
+            InMemoryProductCache memoryCache = new InMemoryProductCache(source);
+            this.cache = memoryCache;
+            this.evict = memoryCache::evict;
+        }
+        // Every product cached, the hit benchmarks start warm
+        this.cache.getAll(ids()).block();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown(){
+        if (this.client != null) {
+            this.client.shutdown();
+        }
+    }
+
+    public List<Integer> ids(){
+        return IntStream.rangeClosed(1, this.products).boxed().toList();
+    }
+
+}
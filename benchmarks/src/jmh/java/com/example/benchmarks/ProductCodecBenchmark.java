@@ -0,0 +1,86 @@
+package com.example.benchmarks;
+
+import com.example.templates.CacheEntry;
+import com.performance.model.Product;
+import com.performance.util.ProductCacheCodec;
+import io.netty.buffer.ByteBuf;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.redisson.client.codec.Codec;
+import org.redisson.client.protocol.Decoder;
+import org.redisson.client.protocol.Encoder;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Value (de)serialization of the product hash per ProductCacheCodec, what every cache hit and write pays
+ * on top of the Redis round trip. No Redis needed.
+ *
+ *  - encode/decode: ns/op of one CacheEntry<Product> (an expiring entry, the larger case).
+ *  - bytes: size of the encoded entry, reported as the secondary metric of encode.
+ *
+ * End-to-end GET latency per codec: CacheTemplateBenchmark with -Pbackend=redis -Pcodec=JSON,BINARY,AVRO.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ProductCodecBenchmark {
+
+    @Param({"JSON", "BINARY", "AVRO"})
+    public ProductCacheCodec codec;
+
+    private Encoder encoder;
+    private Decoder<Object> decoder;
+    private CacheEntry<Product> entry;
+    private ByteBuf encoded;
+
+    // Not a rate: reported as is, the last encoded size
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class EntrySize {
+        public long bytes;
+    }
+
+    @Setup
+    public void setup() throws IOException {
+        Codec codec = this.codec.codec();
+        // The hash values go through the map value encoder/decoder
+        this.encoder = codec.getMapValueEncoder();
+        this.decoder = codec.getMapValueDecoder();
+        long now = System.currentTimeMillis();
+        this.entry = new CacheEntry<>(new Product(42, "product 42", 63.0), now, 3, now + 240_000, now + 300_000);
+        this.encoded = this.encoder.encode(this.entry);
+    }
+
+    @TearDown
+    public void tearDown(){
+        this.encoded.release();
+    }
+
+    @Benchmark
+    public int encode(EntrySize size) throws IOException {
+        ByteBuf buf = this.encoder.encode(this.entry);
+        try {
+            size.bytes = buf.readableBytes();
+            return buf.readableBytes();
+        } finally {
+            buf.release();
+        }
+    }
+
+    // duplicate(): own reader index over the same bytes, nothing copied
+    @Benchmark
+    public Object decode() throws IOException {
+        return this.decoder.decode(this.encoded.duplicate(), null);
+    }
+
+}
@@ -0,0 +1,91 @@
+package com.example.benchmarks;
+
+import com.performance.util.VisitCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * ProductVisitService aggregation of one flush window (visits → count per product),
+ * for a quiet and a busy window. No Redis needed.
+ *
+ *  - groupingBy: the previous pipeline, a boxed List of the window's visits grouped into a Map.
+ *  - counters:   the VisitCounters increments of the same visits, then the swap that ends the window.
+ *  - increment:  one visit, 4 threads counting concurrently (contention on the stripes).
+ *
+ * Visits are skewed towards the low ids (a few hot products), with a fixed seed so runs compare.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ProductVisitBenchmark {
+
+    @Param({"1000", "100000"})
+    public int visits;
+
+    @Param({"1000"})
+    public int products;
+
+    private int[] window;
+    private VisitCounters counters;
+
+    @Setup
+    public void setup(){
+        Random random = new Random(42);
+        this.window = new int[this.visits];
+        for (int i = 0; i < this.visits; i++) {
+            this.window[i] = (int) (this.products * Math.pow(random.nextDouble(), 3)) + 1;
+        }
+        this.counters = new VisitCounters(0, 65_536);
+    }
+
+    @Benchmark
+    public Map<Integer, Long> groupingBy(){
+        List<Integer> boxed = new ArrayList<>(this.window.length);
+        for (int productId : this.window) {
+            boxed.add(productId);
+        }
+        return boxed.stream().collect(Collectors.groupingBy(Function.identity(), Collectors.counting()));
+    }
+
+    @Benchmark
+    @Threads(1)
+    public VisitCounters.Counts counters(){
+        for (int productId : this.window) {
+            this.counters.increment(productId);
+        }
+        return this.counters.swap(null);
+    }
+
+    @Benchmark
+    @Threads(4)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public void increment(ThreadVisit visit){
+        this.counters.increment(this.window[visit.next(this.window.length)]);
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadVisit {
+        private int index;
+
+        private int next(int length){
+            this.index = this.index + 1 == length ? 0 : this.index + 1;
+            return this.index;
+        }
+    }
+
+}
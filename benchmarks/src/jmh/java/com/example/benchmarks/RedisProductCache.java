@@ -0,0 +1,69 @@
+package com.example.benchmarks;
+
+import com.performance.config.ProductCacheProperties;
+import com.performance.model.Product;
+import com.performance.util.ProductCacheCodec;
+import com.performance.util.ProductCacheTemplate;
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.ConnectionFactoryMetadata;
+import org.reactivestreams.Publisher;
+import org.redisson.api.RedissonReactiveClient;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+import org.springframework.data.r2dbc.dialect.PostgresDialect;
+import org.springframework.r2dbc.core.DatabaseClient;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The real ProductCacheTemplate (`product` hash in Redis, with the given codec) with its source reads
+ * answered by an InMemoryProductSource, so only Redis is needed.
+ */
+public class RedisProductCache extends ProductCacheTemplate {
+
+    private final InMemoryProductSource source;
+
+    public RedisProductCache(InMemoryProductSource source, RedissonReactiveClient client, ProductCacheCodec codec) {
+        super(null, new R2dbcEntityTemplate(DatabaseClient.create(new NoDatabase()), PostgresDialect.INSTANCE),
+                client, properties(codec));
+        this.source = source;
+    }
+
+    public Mono<Boolean> evict(Integer id){
+        return deleteFromCache(id);
+    }
+
+    @Override
+    protected Mono<Product> getFromSource(Integer id) {
+        return this.source.get(id);
+    }
+
+    @Override
+    protected Mono<Map<Integer, Product>> getAllFromSource(Set<Integer> ids) {
+        return this.source.getAll(ids);
+    }
+
+    private static ProductCacheProperties properties(ProductCacheCodec codec){
+        ProductCacheProperties properties = new ProductCacheProperties();
+        properties.setCodec(codec);
+        return properties;
+    }
+
+    // Only there to build the template, the benchmarks never write to the source
+    private static class NoDatabase implements ConnectionFactory {
+
+        @Override
+        public Publisher<? extends Connection> create() {
+            return Mono.error(new UnsupportedOperationException("No database in the benchmarks"));
+        }
+
+        @Override
+        public ConnectionFactoryMetadata getMetadata() {
+            return () -> "none";
+        }
+
+    }
+
+}
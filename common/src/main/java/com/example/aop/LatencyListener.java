@@ -0,0 +1,14 @@
+package com.example.aop;
+
+import java.lang.reflect.Method;
+
+/**
+ * Receives every @Timing measurement recorded by LatencyRecorder,
+ * e.g. to publish it as a metrics timer. Called on the caller's thread, so it must not block.
+ */
+@FunctionalInterface
+public interface LatencyListener {
+
+    void onLatency(Method method, long nanos);
+
+}
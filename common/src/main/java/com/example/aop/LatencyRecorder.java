@@ -0,0 +1,135 @@
+package com.example.aop;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+
+import java.lang.reflect.Method;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Per-method latency histograms for @Timing (HdrHistogram, nanosecond values, 3 significant digits).
+ *
+ *  - record() is wait-free: each method has two Recorders (interval, total),
+ *    writers never block each other or the reader.
+ *  - Every report interval, the interval histogram of each method is swapped out
+ *    and logged as one line of percentiles.
+ *  - snapshot() adds what was recorded since the last snapshot to the method's total and returns the totals,
+ *    served by TimingController. It never touches the interval, so it does not shorten a report.
+ *  - Listeners get every raw measurement as well (e.g. the Micrometer timers of the instrumentation module).
+ */
+@Component
+@Slf4j
+public class LatencyRecorder {
+
+    private final Map<Method, MethodLatency> latencies = new ConcurrentHashMap<>();
+    private final List<LatencyListener> listeners = new CopyOnWriteArrayList<>();
+    private final Duration reportInterval;
+    private Disposable reporter;
+
+    public LatencyRecorder(@Value("${timing.report-interval:10s}") Duration reportInterval) {
+        this.reportInterval = reportInterval;
+    }
+
+    @PostConstruct
+    private void init(){
+        this.reporter = Flux.interval(this.reportInterval, this.reportInterval)
+                .subscribe(tick -> report());
+    }
+
+    @PreDestroy
+    private void destroy(){
+        this.reporter.dispose();
+    }
+
+    public void addListener(LatencyListener listener){
+        this.listeners.add(listener);
+    }
+
+    public void record(Method method, long nanos){
+        long value = Math.max(0, nanos);
+        this.latencies.computeIfAbsent(method, MethodLatency::new)
+                .record(value);
+        for (LatencyListener listener : this.listeners) {
+            listener.onLatency(method, value);
+        }
+    }
+
+    // Totals since start, slowest p99 first
+    public List<LatencySnapshot> snapshot(){
+        return this.latencies.values().stream()
+                .map(MethodLatency::totalSnapshot)
+                .sorted(Comparator.comparingDouble(LatencySnapshot::getP99).reversed())
+                .toList();
+    }
+
+    private void report(){
+        this.latencies.values().forEach(latency -> {
+            LatencySnapshot s = latency.intervalSnapshot();
+            if (s.getCount() > 0) {
+                log.info("TimingAspect - Method: {} - last {}: count {}, p50 {} ms, p95 {} ms, p99 {} ms, max {} ms",
+                        s.getMethod(), this.reportInterval, s.getCount(), s.getP50(), s.getP95(), s.getP99(), s.getMax());
+            }
+        });
+    }
+
+    private static class MethodLatency {
+
+        private final String name;
+        private final Recorder intervalRecorder = new Recorder(3);
+        private final Recorder totalRecorder = new Recorder(3);
+        // Guarded by this, only touched on snapshot/report
+        private final Histogram total = new Histogram(3);
+        private Histogram interval;
+        private Histogram totalDelta;
+
+        private MethodLatency(Method method) {
+            this.name = method.getDeclaringClass().getSimpleName() + "." + method.getName();
+        }
+
+        private void record(long nanos){
+            this.intervalRecorder.recordValue(nanos);
+            this.totalRecorder.recordValue(nanos);
+        }
+
+        // Values recorded since the previous report, summarized before the lock is released
+        private synchronized LatencySnapshot intervalSnapshot(){
+            this.interval = this.intervalRecorder.getIntervalHistogram(this.interval);
+            return snapshot(this.interval);
+        }
+
+        private synchronized LatencySnapshot totalSnapshot(){
+            this.totalDelta = this.totalRecorder.getIntervalHistogram(this.totalDelta);
+            this.total.add(this.totalDelta);
+            return snapshot(this.total);
+        }
+
+        private LatencySnapshot snapshot(Histogram histogram){
+            return new LatencySnapshot(this.name,
+                    histogram.getTotalCount(),
+                    millis(histogram.getMean()),
+                    millis(histogram.getValueAtPercentile(50)),
+                    millis(histogram.getValueAtPercentile(90)),
+                    millis(histogram.getValueAtPercentile(95)),
+                    millis(histogram.getValueAtPercentile(99)),
+                    millis(histogram.getValueAtPercentile(99.9)),
+                    millis(histogram.getMaxValue()));
+        }
+
+        private static double millis(double nanos){
+            return Math.round(nanos / 1_000) / 1_000.0;
+        }
+    }
+
+}
@@ -0,0 +1,25 @@
+package com.example.aop;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Latency percentiles of one @Timing method, in milliseconds.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LatencySnapshot {
+
+    private String method;
+    private long count;
+    private double mean;
+    private double p50;
+    private double p90;
+    private double p95;
+    private double p99;
+    private double p999;
+    private double max;
+
+}
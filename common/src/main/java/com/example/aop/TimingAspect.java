@@ -1,22 +1,28 @@
 package com.example.aop;
 
-import lombok.extern.slf4j.Slf4j;
 import org.aspectj.lang.ProceedingJoinPoint;
 import org.aspectj.lang.annotation.Around;
 import org.aspectj.lang.annotation.Aspect;
 import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.context.annotation.Import;
 import org.springframework.stereotype.Component;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
-import reactor.core.scheduler.Schedulers;
 
 import java.lang.reflect.Method;
 
 @Aspect
 @Component
-@Slf4j
+// Importing the aspect brings in the recorder and its endpoint
+@Import({LatencyRecorder.class, TimingController.class})
 public class TimingAspect {
 
+    private final LatencyRecorder latencyRecorder;
+
+    public TimingAspect(LatencyRecorder latencyRecorder) {
+        this.latencyRecorder = latencyRecorder;
+    }
+
     @Around("@annotation(com.example.aop.Timing)")
     public Object timeSpent(ProceedingJoinPoint point) throws Throwable{
         // ProceedingJoinPoint allows to proceed with the method execution
@@ -25,47 +31,39 @@ public class TimingAspect {
         Method method = ((MethodSignature) point.getSignature()).getMethod();
         // MethodSignature provides access to the method being intercepted.
         // It allows to get the method name, return type, parameter types, etc.
+        long start = System.nanoTime();
         Object result = point.proceed();
-        long startTime = System.currentTimeMillis();
 
         /**
-         * elapsed() works on each emitted signal. For Mono, it will emit a single tuple when the Mono completes.
-         * For Flux, it emits per element.
-         *
-         * When under high load with JMeter:
-         *  - doOnSubscribe and elapsed() do not block, but logging itself (log.info) is synchronous.
-         *  - If Netty threads are saturated and logging is slow, the reactive pipeline can be backed up,
-         *    which eventually causes request timeouts.
-         *
-         * To avoid blocking the reactive pipeline with logging:
-         *  - doFinally ensures measure total execution time when the reactive stream completes, errors, or is cancelled.
-         *  - Logging runs on boundedElastic scheduler to avoid blocking Netty threads.
-         *  - Avoids elapsed() per element, which could generate unnecessary tuples for a Flux with many elements
+         * Each call is recorded into the method's HdrHistogram (see LatencyRecorder), no log line per call:
+         *  - Logging per call is synchronous, under JMeter load it becomes the bottleneck
+         *    and backs up the Netty threads.
+         *  - Recording is a wait-free histogram update, percentiles are logged once per interval
+         *    and served on GET /timing.
          *
+         * For Mono/Flux the time is measured in nanoseconds from subscription to the terminal signal
+         * (complete, error or cancel):
+         *  - Mono.defer/Flux.defer take the start time per subscription, the assembly time
+         *    in point.proceed() is not the interesting part of a reactive call.
+         *  - doFinally runs once per subscription, avoids elapsed() per element for a Flux.
          */
         // If result type is Mono
         if (result instanceof Mono<?> mono) {
-            return mono
-                    .doFinally(signalType ->
-                            Schedulers.boundedElastic().schedule(() -> {
-                                long duration = System.currentTimeMillis() - startTime;
-                                log.info("TimingAspect - Method: {} - finished, took {} ms", method.getName(), duration);
-                            })
-                    );
+            return Mono.defer(() -> {
+                long subscribed = System.nanoTime();
+                return mono.doFinally(signalType ->
+                        this.latencyRecorder.record(method, System.nanoTime() - subscribed));
+            });
         // If result type is Flux
         } else if (result instanceof Flux<?> flux) {
-            return flux
-                    .doFinally(signalType ->
-                            Schedulers.boundedElastic().schedule(() -> {
-                                long duration = System.currentTimeMillis() - startTime;
-                                log.info("TimingAspect - Method: {} - finished, took {} ms", method.getName(), duration);
-                            })
-                    );
+            return Flux.defer(() -> {
+                long subscribed = System.nanoTime();
+                return flux.doFinally(signalType ->
+                        this.latencyRecorder.record(method, System.nanoTime() - subscribed));
+            });
         // If method call is not reactive
         } else {
-            long start = System.currentTimeMillis();
-            long end = System.currentTimeMillis();
-            log.info("TimingAspect - Method: {} - took: {} ms", method.getName(), end - start);
+            this.latencyRecorder.record(method, System.nanoTime() - start);
             return result;
         }
     }
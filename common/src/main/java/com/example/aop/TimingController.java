@@ -0,0 +1,24 @@
+package com.example.aop;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("timing")
+public class TimingController {
+
+    @Autowired
+    private LatencyRecorder latencyRecorder;
+
+    // Latency percentiles of every @Timing method since start
+    @GetMapping
+    public Mono<List<LatencySnapshot>> getLatencies(){
+        return Mono.fromSupplier(this.latencyRecorder::snapshot);
+    }
+
+}
@@ -0,0 +1,74 @@
+package com.example.sketch;
+
+/**
+ * Count-Min sketch: approximate frequencies of any number of keys in depth x width int counters.
+ *
+ *  - increment(): one counter per row, chosen by a per-row hash of the key.
+ *  - estimate(): the smallest of the key's counters. It never underestimates, and overestimates
+ *    by more than 2 x total / width with a probability below 2^-depth (collisions in every row).
+ *  - halve(): divides every counter by 2 (aging, as in TinyLFU), so the estimates follow the recent traffic
+ *    instead of growing forever.
+ *
+ * Counters are updated without synchronization: concurrent increments of the same counter may be lost,
+ * which only lowers an estimate slightly.
+ */
+public class CountMinSketch {
+
+    private static final long[] SEEDS = {
+            0x9E3779B97F4A7C15L, 0xC2B2AE3D27D4EB4FL, 0x165667B19E3779F9L, 0xD6E8FEB86659FD93L,
+            0xFF51AFD7ED558CCDL, 0xC4CEB9FE1A85EC53L, 0x94D049BB133111EBL, 0xBF58476D1CE4E5B9L
+    };
+
+    private final int[] counters;
+    private final int width;
+    private final int depth;
+    private final int mask;
+
+    // width: rounded up to a power of two, depth: at most 8
+    public CountMinSketch(int width, int depth) {
+        this.width = Integer.highestOneBit(Math.max(2, width - 1)) << 1;
+        this.depth = Math.max(1, Math.min(depth, SEEDS.length));
+        this.mask = this.width - 1;
+        this.counters = new int[this.width * this.depth];
+    }
+
+    // Returns the estimate after the increment
+    public int increment(Object key){
+        int hash = key.hashCode();
+        int min = Integer.MAX_VALUE;
+        for (int row = 0; row < this.depth; row++) {
+            int index = index(row, hash);
+            int count = this.counters[index];
+            if (count < Integer.MAX_VALUE) {
+                this.counters[index] = ++count;
+            }
+            min = Math.min(min, count);
+        }
+        return min;
+    }
+
+    public int estimate(Object key){
+        int hash = key.hashCode();
+        int min = Integer.MAX_VALUE;
+        for (int row = 0; row < this.depth; row++) {
+            min = Math.min(min, this.counters[index(row, hash)]);
+        }
+        return min;
+    }
+
+    public void halve(){
+        for (int i = 0; i < this.counters.length; i++) {
+            this.counters[i] >>>= 1;
+        }
+    }
+
+    public int getWidth(){
+        return this.width;
+    }
+
+    private int index(int row, int hash){
+        long h = (hash & 0xFFFFFFFFL) * SEEDS[row];
+        return row * this.width + ((int) (h >>> 32) & this.mask);
+    }
+
+}
@@ -0,0 +1,108 @@
+package com.example.sketch;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Space-Saving heavy hitters (Metwally et al.): the most frequent items of a stream in a fixed number of counters.
+ *
+ *  - offer(): a tracked item's counter grows, an untracked item takes over the smallest counter
+ *    and inherits its count as error. The true count of a tracked item is between count - error and count.
+ *  - Every item seen more than total / capacity times is tracked.
+ *  - Memory is capacity counters, whatever the number of distinct items.
+ *  - decay() scales all counters down, so the summary follows the current traffic instead of all-time totals.
+ *
+ * Not thread-safe.
+ */
+public class SpaceSaving<T> {
+
+    private final int capacity;
+    private final Map<T, Counter<T>> counters;
+    private long total;
+
+    public SpaceSaving(int capacity) {
+        this.capacity = capacity;
+        this.counters = new HashMap<>(capacity * 2);
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Counter<T> {
+        private T item;
+        private long count;
+        private long error;
+    }
+
+    public void offer(T item, long count){
+        this.total += count;
+        Counter<T> counter = this.counters.get(item);
+        if (counter != null) {
+            counter.count += count;
+            return;
+        }
+        if (this.counters.size() < this.capacity) {
+            this.counters.put(item, new Counter<>(item, count, 0));
+            return;
+        }
+        // Linear scan: offers are per window and product, not per visit, and capacity is small
+        Counter<T> min = null;
+        for (Counter<T> c : this.counters.values()) {
+            if (min == null || c.count < min.count) {
+                min = c;
+            }
+        }
+        this.counters.remove(min.item);
+        this.counters.put(item, new Counter<>(item, min.count + count, min.count));
+    }
+
+    // Multiplies every count (and error) by factor, counters reaching 0 are freed
+    public void decay(double factor){
+        this.total = (long) (this.total * factor);
+        Iterator<Counter<T>> iterator = this.counters.values().iterator();
+        while (iterator.hasNext()) {
+            Counter<T> c = iterator.next();
+            c.count = (long) (c.count * factor);
+            c.error = (long) (c.error * factor);
+            if (c.count == 0) {
+                iterator.remove();
+            }
+        }
+    }
+
+    // Copies of the k largest counters, largest first
+    public List<Counter<T>> top(int k){
+        List<Counter<T>> top = new ArrayList<>(this.counters.size());
+        this.counters.values().forEach(c -> top.add(new Counter<>(c.item, c.count, c.error)));
+        top.sort(Comparator.comparingLong((Counter<T> c) -> c.count).reversed());
+        return top.size() > k ? top.subList(0, k) : top;
+    }
+
+    /**
+     * Upper bound of the count of any untracked item:
+     * the smallest counter once all counters are in use, 0 before (nothing was evicted).
+     */
+    public long getMinCount(){
+        if (this.counters.size() < this.capacity) {
+            return 0;
+        }
+        return this.counters.values().stream().mapToLong(c -> c.count).min().orElse(0);
+    }
+
+    public long getTotal(){
+        return this.total;
+    }
+
+    public int getCapacity(){
+        return this.capacity;
+    }
+
+}
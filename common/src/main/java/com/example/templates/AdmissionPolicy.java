@@ -0,0 +1,62 @@
+package com.example.templates;
+
+import com.example.sketch.CountMinSketch;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * TinyLFU-style admission for the cache writes of CacheTemplate misses:
+ *  - Every read (hit or miss) is recorded in a Count-Min sketch.
+ *  - A loaded miss is written to the cache only if the key's estimated frequency reaches the threshold,
+ *    so a one-off scan of cold keys is served from the source without evicting hot entries
+ *    (the cache itself, e.g. Redis allkeys-lru, still picks the victims).
+ *  - Aging: every sampleSize recorded reads, the sketch is halved, frequencies follow the recent traffic.
+ *
+ * Explicit writes (insert, update) and tombstones are always written, skipping them would leave stale entries.
+ */
+public class AdmissionPolicy {
+
+    private final CountMinSketch sketch;
+    private final int threshold;
+    private final long sampleSize;
+    private final LongAdder samples = new LongAdder();
+
+    private final LongAdder admitted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    // sampleSize 0: 10 reads per counter of a row, as in TinyLFU
+    public AdmissionPolicy(int threshold, int width, int depth, long sampleSize) {
+        this.sketch = new CountMinSketch(width, depth);
+        this.threshold = threshold;
+        this.sampleSize = sampleSize > 0 ? sampleSize : 10L * this.sketch.getWidth();
+    }
+
+    public void record(Object key){
+        this.sketch.increment(key);
+        this.samples.increment();
+        // Racy check, concurrent readers may both halve: the estimates only age a little faster
+        if (this.samples.sum() >= this.sampleSize) {
+            this.samples.reset();
+            this.sketch.halve();
+        }
+    }
+
+    public boolean admit(Object key){
+        if (this.sketch.estimate(key) >= this.threshold) {
+            this.admitted.increment();
+            return true;
+        }
+        this.rejected.increment();
+        return false;
+    }
+
+    public Map<String, Number> getStats(){
+        Map<String, Number> stats = new LinkedHashMap<>();
+        stats.put("admission.admitted", this.admitted.sum());
+        stats.put("admission.rejected", this.rejected.sum());
+        return stats;
+    }
+
+}
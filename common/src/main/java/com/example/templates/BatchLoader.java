@@ -0,0 +1,114 @@
+package com.example.templates;
+
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Request collapsing (DataLoader style) for single-key reads:
+ *  - load(key) joins the open batch, the first key of a batch opens it and starts its window timer.
+ *  - The batch is dispatched as one bulk call when the window ends or when it reaches maxBatchSize keys,
+ *    whichever comes first, so a caller waits at most the window on top of the bulk call.
+ *  - The result map is split back to the callers, a key absent from it completes empty.
+ *    A failed bulk call fails every caller of the batch.
+ *  - Duplicate keys in a batch share one slot of the bulk call.
+ */
+public class BatchLoader<K, V> {
+
+    private final Function<Set<K>, Mono<Map<K, V>>> batchFunction;
+    private final long windowNanos;
+    private final int maxBatchSize;
+    private final Scheduler scheduler;
+
+    // Open batch, guarded by this
+    private Batch<K, V> current;
+
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder keys = new LongAdder();
+    private final LongAdder requests = new LongAdder();
+
+    public BatchLoader(Function<Set<K>, Mono<Map<K, V>>> batchFunction, Duration window, int maxBatchSize) {
+        this.batchFunction = batchFunction;
+        this.windowNanos = window.toNanos();
+        this.maxBatchSize = maxBatchSize;
+        this.scheduler = Schedulers.parallel();
+    }
+
+    public Mono<V> load(K key){
+        return Mono.create(sink -> {
+            this.requests.increment();
+            Batch<K, V> full = null;
+            synchronized (this) {
+                if (this.current == null) {
+                    Batch<K, V> batch = new Batch<>();
+                    this.current = batch;
+                    batch.timer = this.scheduler.schedule(() -> dispatch(batch), this.windowNanos, TimeUnit.NANOSECONDS);
+                }
+                this.current.sinks.computeIfAbsent(key, k -> new ArrayList<>(1)).add(sink);
+                if (this.current.sinks.size() >= this.maxBatchSize) {
+                    full = this.current;
+                    this.current = null;
+                }
+            }
+            if (full != null) {
+                full.timer.dispose();
+                dispatch(full);
+            }
+        });
+    }
+
+    /**
+     * requests: load() calls, keys: distinct keys sent to the bulk calls, batches: bulk calls.
+     */
+    public Map<String, Number> getStats(){
+        Map<String, Number> stats = new LinkedHashMap<>();
+        stats.put("requests", this.requests.sum());
+        stats.put("keys", this.keys.sum());
+        stats.put("batches", this.batches.sum());
+        return stats;
+    }
+
+    private void dispatch(Batch<K, V> batch){
+        synchronized (this) {
+            if (this.current == batch) {
+                this.current = null;
+            }
+        }
+        // The timer and the size limit may both dispatch the batch
+        if (!batch.dispatched.compareAndSet(false, true)) {
+            return;
+        }
+        this.batches.increment();
+        this.keys.add(batch.sinks.size());
+        Mono.defer(() -> this.batchFunction.apply(new LinkedHashSet<>(batch.sinks.keySet())))
+                .defaultIfEmpty(Map.of())
+                .subscribe(
+                        result -> batch.sinks.forEach((key, sinks) -> {
+                            V value = result.get(key);
+                            sinks.forEach(sink -> sink.success(value));
+                        }),
+                        error -> batch.sinks.values().forEach(sinks -> sinks.forEach(sink -> sink.error(error))));
+    }
+
+    private static class Batch<K, V> {
+        // No longer modified once the batch is closed (under the loader lock)
+        private final Map<K, List<MonoSink<V>>> sinks = new LinkedHashMap<>();
+        private final AtomicBoolean dispatched = new AtomicBoolean();
+        private Disposable timer;
+    }
+
+}
@@ -0,0 +1,230 @@
+package com.example.templates;
+
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Circuit breaker for the cache tier (e.g. Redis) of a CacheTemplate.
+ *
+ * States:
+ *  - CLOSED: cache calls go through, outcomes are recorded in a sliding window of the last windowSize calls.
+ *    Once minimumCalls are recorded, the breaker opens when the failure rate or the slow call rate
+ *    reaches its threshold. A call longer than callTimeout is cancelled and counts as a failure,
+ *    so a sick Redis costs callTimeout per call, not the client timeout and retries.
+ *  - OPEN: cache calls are skipped, CacheTemplate serves straight from the source.
+ *  - HALF_OPEN: after openDuration, halfOpenCalls trial calls are let through.
+ *    All succeed -> CLOSED, any failure or slow call -> OPEN again.
+ */
+@Slf4j
+public class CacheCircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private static final byte FAILURE = 1;
+    private static final byte SLOW = 2;
+
+    private final String name;
+    private final double failureRateThreshold;
+    private final double slowCallRateThreshold;
+    private final long slowCallNanos;
+    private final Duration callTimeout;
+    private final long openNanos;
+    private final int minimumCalls;
+    private final int halfOpenCalls;
+
+    // Outcomes of the last calls (ring buffer), guarded by this
+    private final byte[] window;
+    private int index;
+    private int recorded;
+    private int failures;
+    private int slowCalls;
+
+    private volatile State state = State.CLOSED;
+    private long openedAt;
+    private int halfOpenPermits;
+    private int halfOpenSuccesses;
+
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder slow = new LongAdder();
+    private final LongAdder opened = new LongAdder();
+    private final LongAdder halfOpened = new LongAdder();
+    private final LongAdder closed = new LongAdder();
+
+    /**
+     * @param failureRateThreshold  percentage of failed calls that opens the breaker
+     * @param slowCallRateThreshold percentage of calls longer than slowCallDuration that opens the breaker
+     */
+    public CacheCircuitBreaker(String name,
+                               int windowSize,
+                               int minimumCalls,
+                               double failureRateThreshold,
+                               double slowCallRateThreshold,
+                               Duration slowCallDuration,
+                               Duration callTimeout,
+                               Duration openDuration,
+                               int halfOpenCalls) {
+        this.name = name;
+        this.window = new byte[windowSize];
+        this.minimumCalls = Math.min(minimumCalls, windowSize);
+        this.failureRateThreshold = failureRateThreshold;
+        this.slowCallRateThreshold = slowCallRateThreshold;
+        this.slowCallNanos = slowCallDuration.toNanos();
+        this.callTimeout = callTimeout;
+        this.openNanos = openDuration.toNanos();
+        this.halfOpenCalls = halfOpenCalls;
+    }
+
+    public State getState(){
+        return this.state;
+    }
+
+    public Duration getCallTimeout(){
+        return this.callTimeout;
+    }
+
+    /**
+     * Whether a cache call may go through. Every permitted call must end with
+     * onSuccess, onError or onCancel.
+     */
+    public boolean tryAcquire(){
+        // Lock-free in the common case
+        if (this.state == State.CLOSED) {
+            return true;
+        }
+        synchronized (this) {
+            if (this.state == State.OPEN && System.nanoTime() - this.openedAt >= this.openNanos) {
+                transitionTo(State.HALF_OPEN);
+            }
+            if (this.state == State.HALF_OPEN && this.halfOpenPermits > 0) {
+                this.halfOpenPermits--;
+                return true;
+            }
+            if (this.state == State.CLOSED) {
+                return true;
+            }
+        }
+        this.rejected.increment();
+        return false;
+    }
+
+    public void onSuccess(long elapsedNanos){
+        boolean isSlow = elapsedNanos >= this.slowCallNanos;
+        if (isSlow) {
+            this.slow.increment();
+        }
+        record(isSlow ? SLOW : 0);
+    }
+
+    public void onError(){
+        this.failed.increment();
+        record(FAILURE);
+    }
+
+    // A cancelled trial call gives its permit back, it says nothing about the cache
+    public synchronized void onCancel(){
+        if (this.state == State.HALF_OPEN && this.halfOpenPermits < this.halfOpenCalls) {
+            this.halfOpenPermits++;
+        }
+    }
+
+    /**
+     * Runs a cache call through the breaker: skipped (fallback) while open,
+     * bounded by callTimeout, its outcome recorded. An error or a timeout also falls back.
+     */
+    public <T> Mono<T> call(Supplier<Mono<T>> call, Supplier<Mono<T>> fallback){
+        return Mono.defer(() -> {
+            if (!tryAcquire()) {
+                return fallback.get();
+            }
+            long start = System.nanoTime();
+            return call.get()
+                    .timeout(this.callTimeout)
+                    .doOnSuccess(v -> onSuccess(System.nanoTime() - start))
+                    .doOnCancel(this::onCancel)
+                    .onErrorResume(e -> {
+                        onError();
+                        return fallback.get();
+                    });
+        });
+    }
+
+    private synchronized void record(byte outcome){
+        switch (this.state) {
+            case HALF_OPEN -> {
+                if (outcome != 0) {
+                    transitionTo(State.OPEN);
+                } else if (++this.halfOpenSuccesses >= this.halfOpenCalls) {
+                    transitionTo(State.CLOSED);
+                }
+            }
+            case CLOSED -> {
+                // Replace the oldest outcome of the window
+                if (this.recorded == this.window.length) {
+                    byte oldest = this.window[this.index];
+                    this.failures -= oldest & FAILURE;
+                    this.slowCalls -= (oldest & SLOW) >> 1;
+                } else {
+                    this.recorded++;
+                }
+                this.window[this.index] = outcome;
+                this.index = (this.index + 1) % this.window.length;
+                this.failures += outcome & FAILURE;
+                this.slowCalls += (outcome & SLOW) >> 1;
+
+                if (this.recorded >= this.minimumCalls &&
+                        (this.failures * 100.0 / this.recorded >= this.failureRateThreshold ||
+                         this.slowCalls * 100.0 / this.recorded >= this.slowCallRateThreshold)) {
+                    transitionTo(State.OPEN);
+                }
+            }
+            case OPEN -> {
+                // Late result of a call started before the breaker opened
+            }
+        }
+    }
+
+    private void transitionTo(State next){
+        log.warn("Cache circuit breaker {}: {} -> {}", this.name, this.state, next);
+        this.state = next;
+        switch (next) {
+            case OPEN -> {
+                this.openedAt = System.nanoTime();
+                this.opened.increment();
+            }
+            case HALF_OPEN -> {
+                this.halfOpenPermits = this.halfOpenCalls;
+                this.halfOpenSuccesses = 0;
+                this.halfOpened.increment();
+            }
+            case CLOSED -> {
+                // Start over with an empty window
+                this.index = 0;
+                this.recorded = 0;
+                this.failures = 0;
+                this.slowCalls = 0;
+                this.closed.increment();
+            }
+        }
+    }
+
+    public Map<String, Number> getStats(){
+        Map<String, Number> stats = new LinkedHashMap<>();
+        // 0: CLOSED, 1: OPEN, 2: HALF_OPEN
+        stats.put("breaker.state", this.state.ordinal());
+        stats.put("breaker.opened", this.opened.sum());
+        stats.put("breaker.half-opened", this.halfOpened.sum());
+        stats.put("breaker.closed", this.closed.sum());
+        stats.put("breaker.rejected", this.rejected.sum());
+        stats.put("breaker.failed", this.failed.sum());
+        stats.put("breaker.slow", this.slow.sum());
+        return stats;
+    }
+
+}
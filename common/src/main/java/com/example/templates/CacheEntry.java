@@ -0,0 +1,54 @@
+package com.example.templates;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Duration;
+
+/**
+ * A cached value together with its metadata, stored next to it in the cache.
+ *
+ *  - loadedAt: when the value was loaded from the source (epoch ms).
+ *  - loadTime: how long the source load took (ms), the "delta" of the XFetch early refresh.
+ *  - staleAt:  soft TTL, after this the value is still served but refreshed in the background.
+ *  - expireAt: hard TTL, after this the value must not be served.
+ *
+ * An entry without value is a tombstone: the key was not found in the source (negative caching).
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CacheEntry<ENTITY> {
+
+    private ENTITY value;
+    private long loadedAt;
+    private long loadTime;
+    private long staleAt;
+    private long expireAt;
+
+    // Entry without expiration, never stale
+    public static <ENTITY> CacheEntry<ENTITY> of(ENTITY value){
+        return new CacheEntry<>(value, System.currentTimeMillis(), 0, Long.MAX_VALUE, Long.MAX_VALUE);
+    }
+
+    // Not found in the source, expires after the negative TTL
+    public static <ENTITY> CacheEntry<ENTITY> tombstone(Duration ttl){
+        long now = System.currentTimeMillis();
+        return new CacheEntry<>(null, now, 0, now + ttl.toMillis(), now + ttl.toMillis());
+    }
+
+    // Not a getter on purpose, so it is not serialized with the entry
+    public boolean hasValue(){
+        return this.value != null;
+    }
+
+    public boolean isStale(long now){
+        return now >= this.staleAt;
+    }
+
+    public boolean isExpired(long now){
+        return now >= this.expireAt;
+    }
+
+}
@@ -1,30 +1,267 @@
 package com.example.templates;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
 /**
  * Template Design Pattern for Cache Operations
  */
 public abstract class CacheTemplate<KEY, ENTITY> {
 
+    // Reads answered by the cache, reads that went to the source, and the time spent in the source loads
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder loadNanos = new LongAdder();
+
+    /**
+     * Single-flight (miss coalescing):
+     *  - When a hot key is evicted, every concurrent get() misses in getFromCache
+     *    and would call getFromSource for the same key.
+     *  - With single-flight enabled, the first caller (leader) starts the source load,
+     *    and every other caller for the same key on this node (coalesced) subscribes
+     *    to the same in-flight Mono, so there is one source query and one updateCache write.
+     *  - The in-flight Mono is removed from the map as soon as the load terminates,
+     *    so later misses start a fresh load.
+     */
+    private volatile boolean singleFlight = false;
+    private final Map<KEY, Mono<ENTITY>> inFlightLoads = new ConcurrentHashMap<>();
+    private final LongAdder leaderLoads = new LongAdder();
+    private final LongAdder coalescedLoads = new LongAdder();
+
+    /**
+     * Expiration (disabled by default), entries are CacheEntry with their metadata:
+     *  - soft TTL: after it the cached value is returned immediately
+     *    and a background refresh reloads it (stale-while-revalidate).
+     *  - hard TTL: after it the entry is a miss, the cache layer should also drop it.
+     *  - XFetch early refresh: before the soft TTL, each read refreshes with a probability
+     *    growing as the entry gets closer to staleAt, scaled by the load time (delta) and beta.
+     *    Keys loaded together then do not all expire together, avoiding latency cliffs.
+     * Only one background refresh per key runs at a time on this node.
+     */
+    private volatile Duration softTtl;
+    private volatile Duration hardTtl;
+    private volatile double beta = 1.0;
+    private final Set<KEY> refreshing = ConcurrentHashMap.newKeySet();
+    private final LongAdder staleHits = new LongAdder();
+    private final LongAdder earlyRefreshes = new LongAdder();
+
+    /**
+     * Negative caching (disabled by default):
+     *  - A key not found in the source is cached as a tombstone (CacheEntry without value)
+     *    with its own short TTL, so probes for missing keys stop reaching the source.
+     *  - Any later write for the key (insert/update) replaces the tombstone.
+     *  - Subclasses opt in by implementing updateTombstoneCache.
+     */
+    private volatile Duration negativeTtl;
+    private final LongAdder negativeHits = new LongAdder();
+    private final LongAdder negativeStores = new LongAdder();
+
+    // Write-behind (disabled by default): update() writes the cache and queues the source write
+    private volatile WriteBehindQueue<KEY, ENTITY> writeBehind;
+
+    /**
+     * Every cache call goes through cacheCall():
+     *  - a cache error falls back (miss, or the source value) instead of failing the request,
+     *  - with a circuit breaker, the call is bounded by its timeout and skipped while the breaker is open,
+     *    so a degraded cache tier is bypassed and requests are served from the source.
+     */
+    private volatile CacheCircuitBreaker circuitBreaker;
+
+    /**
+     * Cache writes that were skipped (breaker open) or failed leave the old entry in the cache,
+     * while the source already has the new value. Their keys are kept here (key → sequence)
+     * and deleted from the cache before the next cache call that goes through, reads included,
+     * so the old entry is never served once the cache is reachable again.
+     * A key skipped again during the deletion gets a new sequence and stays pending.
+     */
+    private final Map<KEY, Long> pendingInvalidations = new ConcurrentHashMap<>();
+    private final AtomicLong invalidationSequence = new AtomicLong();
+    private final AtomicReference<Mono<Void>> invalidating = new AtomicReference<>();
+    private final LongAdder skippedWrites = new LongAdder();
+
+    // Hedged reads (disabled by default): read the source too when the cache is slower than the budget
+    private volatile HedgePolicy hedgePolicy;
 
+    // Admission of loaded misses (disabled by default): only keys read often enough are written to the cache
+    private volatile AdmissionPolicy admissionPolicy;
 
     /**
      * Retrieves an entity by its key, first checking the cache,
      * and if not found, fetching from the source.
      */
     public Mono<ENTITY> get(KEY key){
-        return getFromCache(key)
-                    .switchIfEmpty(
-                            getFromSource(key)
-                                .flatMap(e -> updateCache(key, e))
-                    );
+        AdmissionPolicy admission = this.admissionPolicy;
+        if (admission != null) {
+            admission.record(key);
+        }
+        HedgePolicy hedge = this.hedgePolicy;
+        // Empty on a cache miss, an empty Optional for a tombstone
+        Mono<Optional<ENTITY>> cached = lookup(key, hedge)
+                    .filter(entry -> !entry.isExpired(System.currentTimeMillis()))
+                    .map(entry -> {
+                        if (!entry.hasValue()) {
+                            // Tombstone: known to be missing, do not go to the source
+                            this.negativeHits.increment();
+                            return Optional.<ENTITY>empty();
+                        }
+                        this.hits.increment();
+                        refreshIfNeeded(key, entry);
+                        return Optional.of(entry.getValue());
+                    });
+        return (hedge == null ? cached : hedged(key, cached, hedge))
+                    .switchIfEmpty(Mono.defer(() -> {
+                        this.misses.increment();
+                        return load(key).map(Optional::of);
+                    }))
+                    .mapNotNull(optional -> optional.orElse(null));
+    }
+
+    /**
+     * get() of a projection of the entity (e.g. one field): lookup reads only the projected value
+     * with the entry metadata, and is counted and refreshed like get() (hits, misses, soft TTL, XFetch).
+     * A miss loads and caches the whole entity, projection maps it.
+     * Not hedged, the projected read is meant to be cheaper than the cache read get() hedges.
+     */
+    protected <T> Mono<T> getProjected(KEY key, Supplier<Mono<CacheEntry<T>>> lookup, Function<ENTITY, T> projection){
+        AdmissionPolicy admission = this.admissionPolicy;
+        if (admission != null) {
+            admission.record(key);
+        }
+        return cacheCall(lookup, Mono::empty)
+                    .filter(entry -> !entry.isExpired(System.currentTimeMillis()))
+                    .map(entry -> {
+                        if (!entry.hasValue()) {
+                            this.negativeHits.increment();
+                            return Optional.<T>empty();
+                        }
+                        this.hits.increment();
+                        refreshIfNeeded(key, entry);
+                        return Optional.of(entry.getValue());
+                    })
+                    .switchIfEmpty(Mono.defer(() -> {
+                        this.misses.increment();
+                        return load(key).map(e -> Optional.ofNullable(projection.apply(e)));
+                    }))
+                    .mapNotNull(optional -> optional.orElse(null));
+    }
+
+    /**
+     * Bulk version of get():
+     *  1. Resolves all hits with one getAllFromCache call.
+     *  2. Loads all misses with one getAllFromSource call.
+     *  3. Writes the loaded misses back with one updateAllCache call.
+     * Keys not found in the source are absent from the result map,
+     * which keeps the order of the requested keys.
+     * getAllFromCache returns tombstoned keys with a null value, they count as hits.
+     */
+    public Mono<Map<KEY, ENTITY>> getAll(Collection<KEY> keys){
+        Set<KEY> keySet = new LinkedHashSet<>(keys);
+        if (keySet.isEmpty()) {
+            return Mono.just(Map.of());
+        }
+        AdmissionPolicy admission = this.admissionPolicy;
+        if (admission != null) {
+            keySet.forEach(admission::record);
+        }
+        return cacheCall(() -> getAllFromCache(keySet), () -> Mono.just(Map.<KEY, ENTITY>of()))
+                .flatMap(hits -> {
+                    Set<KEY> misses = new LinkedHashSet<>(keySet);
+                    misses.removeAll(hits.keySet());
+                    hits.values().forEach(e -> (e != null ? this.hits : this.negativeHits).increment());
+                    this.misses.add(misses.size());
+                    if (misses.isEmpty()) {
+                        return Mono.just(hits);
+                    }
+                    return getAllFromSource(misses)
+                            .flatMap(loaded -> {
+                                Map<KEY, ENTITY> admitted = admitted(loaded);
+                                return admitted.isEmpty() ?
+                                        Mono.just(loaded) :
+                                        cacheCall(() -> updateAllCache(admitted), () -> Mono.just(admitted))
+                                                .thenReturn(loaded);
+                            })
+                            .flatMap(loaded -> Flux.fromIterable(misses)
+                                    .filter(key -> !loaded.containsKey(key))
+                                    .flatMap(this::cacheNotFound)
+                                    .then(Mono.just(loaded)))
+                            .map(loaded -> {
+                                Map<KEY, ENTITY> all = new LinkedHashMap<>(hits);
+                                all.putAll(loaded);
+                                return all;
+                            });
+                })
+                .map(all -> {
+                    Map<KEY, ENTITY> ordered = new LinkedHashMap<>();
+                    keySet.forEach(key -> {
+                        ENTITY entity = all.get(key);
+                        if (entity != null) {
+                            ordered.put(key, entity);
+                        }
+                    });
+                    return ordered;
+                });
+    }
+
+    /**
+     * Loads keys into the cache ahead of traffic: warm-up, pre-fill, hot key prefetch.
+     *  - Bypasses the admission policy, these keys are cached because they are known to be wanted,
+     *    and they are not recorded as accesses either.
+     *  - Not counted in hits / misses, it is not a read.
+     *  - Keys not found in the source are skipped, no tombstone.
+     * Returns the keys that are in the cache afterwards: already cached or written by this call.
+     * A failed cache write leaves its keys out.
+     */
+    public Mono<Set<KEY>> warm(Collection<KEY> keys){
+        Set<KEY> keySet = new LinkedHashSet<>(keys);
+        if (keySet.isEmpty()) {
+            return Mono.just(Set.of());
+        }
+        return cacheCall(() -> getAllFromCache(keySet), () -> Mono.just(Map.<KEY, ENTITY>of()))
+                .flatMap(hits -> {
+                    Set<KEY> cached = new LinkedHashSet<>();
+                    hits.forEach((key, entity) -> {
+                        if (entity != null) {
+                            cached.add(key);
+                        }
+                    });
+                    Set<KEY> misses = new LinkedHashSet<>(keySet);
+                    misses.removeAll(hits.keySet());
+                    if (misses.isEmpty()) {
+                        return Mono.just(cached);
+                    }
+                    return getAllFromSource(misses)
+                            .flatMap(loaded -> loaded.isEmpty() ?
+                                    Mono.just(Set.<KEY>of()) :
+                                    cacheCall(() -> updateAllCache(loaded).map(Map::keySet),
+                                            () -> Mono.just(Set.<KEY>of())))
+                            .map(written -> {
+                                cached.addAll(written);
+                                return cached;
+                            });
+                });
     }
 
     public Mono<ENTITY> insert(ENTITY entity){
         return insertSource(entity)
-                    .flatMap(this::insertCache);
+                    .flatMap(e -> cacheWrite(keyOf(e), () -> insertCache(e), e));
     }
 
     /**
@@ -33,11 +270,23 @@ public abstract class CacheTemplate<KEY, ENTITY> {
      *  1. Update cache first and then source
      *  2. Update source first and then cache
      *  3. Update source and remove from cache
+     *
+     * With write-behind, the source write is queued first and the cache updated after,
+     * it is persisted later in a batch by updateAllSource. A failed enqueue leaves the cache untouched,
+     * so the cache never holds a value that will not reach the source.
+     * The cache write goes through cacheWrite: with the cache down the write is still accepted,
+     * and the key is deleted from the cache once it is reachable again.
      */
     public Mono<ENTITY> update(KEY key, ENTITY entity){
+        WriteBehindQueue<KEY, ENTITY> queue = this.writeBehind;
+        if (queue != null) {
+            return queue.awaitCapacity()
+                    .then(Mono.defer(() -> queue.enqueue(key, entity)))
+                    .then(Mono.defer(() -> cacheWrite(key, () -> updateCache(key, entity), entity)));
+        }
         return updateSource(key, entity)
                     .flatMap(e ->
-                            updateCache(key, e)
+                            cacheWrite(key, () -> updateCache(key, e), e)
 //                            deleteFromCache(key).thenReturn(e)
                     );
     }
@@ -48,7 +297,429 @@ public abstract class CacheTemplate<KEY, ENTITY> {
      */
     public Mono<Boolean> delete(KEY key){
         return deleteFromSource(key)
-                    .then(deleteFromCache(key));
+                    .then(cacheWrite(key, () -> deleteFromCache(key), false));
+    }
+
+    /**
+     * Enables or disables single-flight miss coalescing (disabled by default).
+     */
+    public CacheTemplate<KEY, ENTITY> setSingleFlight(boolean singleFlight){
+        this.singleFlight = singleFlight;
+        return this;
+    }
+
+    public boolean isSingleFlight(){
+        return this.singleFlight;
+    }
+
+    /**
+     * Enables soft/hard TTL, beta scales the XFetch early refresh (1.0 is the usual value, 0 disables it).
+     */
+    public CacheTemplate<KEY, ENTITY> setExpiration(Duration softTtl, Duration hardTtl, double beta){
+        this.softTtl = softTtl;
+        this.hardTtl = hardTtl;
+        this.beta = beta;
+        return this;
+    }
+
+    public boolean isExpiring(){
+        return this.hardTtl != null;
+    }
+
+    /**
+     * Enables write-behind for update(), the queue flushes into updateAllSource.
+     */
+    public CacheTemplate<KEY, ENTITY> setWriteBehind(WriteBehindQueue<KEY, ENTITY> writeBehind){
+        this.writeBehind = writeBehind;
+        writeBehind.start(this::flushToSource);
+        return this;
+    }
+
+    /**
+     * Writes a write-behind batch to the source, then deletes its keys from the cache:
+     * a miss loaded while the batch was queued cached the old source value.
+     * The keys are deleted rather than written again, a newer update cached after the batch was read
+     * must not be replaced by the flushed value, it costs one miss and is flushed in a later batch.
+     */
+    private Mono<Void> flushToSource(Map<KEY, ENTITY> entities){
+        return updateAllSource(entities)
+                .thenMany(Flux.fromIterable(entities.keySet()))
+                .flatMap(key -> cacheWrite(key, () -> deleteFromCache(key), false))
+                .then();
+    }
+
+    public boolean isWriteBehind(){
+        return this.writeBehind != null;
+    }
+
+    public CacheTemplate<KEY, ENTITY> setCircuitBreaker(CacheCircuitBreaker circuitBreaker){
+        this.circuitBreaker = circuitBreaker;
+        return this;
+    }
+
+    public CacheTemplate<KEY, ENTITY> setHedgePolicy(HedgePolicy hedgePolicy){
+        this.hedgePolicy = hedgePolicy;
+        return this;
+    }
+
+    public CacheTemplate<KEY, ENTITY> setAdmissionPolicy(AdmissionPolicy admissionPolicy){
+        this.admissionPolicy = admissionPolicy;
+        return this;
+    }
+
+    public Duration getHardTtl(){
+        return this.hardTtl;
+    }
+
+    /**
+     * Enables negative caching of keys missing in the source, null disables it.
+     */
+    public CacheTemplate<KEY, ENTITY> setNegativeTtl(Duration negativeTtl){
+        this.negativeTtl = negativeTtl;
+        return this;
+    }
+
+    public boolean isNegativeCaching(){
+        return this.negativeTtl != null;
+    }
+
+    // Number of gets answered by a tombstone instead of the source
+    public long getNegativeHits(){
+        return this.negativeHits.sum();
+    }
+
+    // Number of misses that started a source load
+    public long getLeaderLoads(){
+        return this.leaderLoads.sum();
+    }
+
+    // Number of misses that joined a load already in flight for the same key
+    public long getCoalescedLoads(){
+        return this.coalescedLoads.sum();
+    }
+
+    public long getHits(){
+        return this.hits.sum();
+    }
+
+    public long getMisses(){
+        return this.misses.sum();
+    }
+
+    // Number of source loads (get misses and background refreshes) and their total time
+    public long getLoads(){
+        return this.loads.sum();
+    }
+
+    public long getLoadNanos(){
+        return this.loadNanos.sum();
+    }
+
+    /**
+     * Snapshot of the template counters, keyed by metric name.
+     * Decorators and subclasses add their own counters on top of these.
+     */
+    public Map<String, Number> getStats(){
+        Map<String, Number> stats = new LinkedHashMap<>();
+        stats.put("hits", getHits());
+        stats.put("misses", getMisses());
+        stats.put("loads", getLoads());
+        stats.put("load.leader", getLeaderLoads());
+        stats.put("load.coalesced", getCoalescedLoads());
+        stats.put("stale.hits", this.staleHits.sum());
+        stats.put("refresh.early", this.earlyRefreshes.sum());
+        stats.put("negative.hits", getNegativeHits());
+        stats.put("negative.stores", this.negativeStores.sum());
+        stats.put("writes.skipped", this.skippedWrites.sum());
+        stats.put("invalidations.pending", this.pendingInvalidations.size());
+        WriteBehindQueue<KEY, ENTITY> queue = this.writeBehind;
+        if (queue != null) {
+            stats.putAll(queue.getStats());
+        }
+        CacheCircuitBreaker breaker = this.circuitBreaker;
+        if (breaker != null) {
+            stats.putAll(breaker.getStats());
+        }
+        HedgePolicy hedge = this.hedgePolicy;
+        if (hedge != null) {
+            stats.putAll(hedge.getStats());
+        }
+        AdmissionPolicy admission = this.admissionPolicy;
+        if (admission != null) {
+            stats.putAll(admission.getStats());
+        }
+        return stats;
+    }
+
+    /**
+     * Wraps a value loaded from the source with the metadata of the current expiration settings.
+     */
+    protected CacheEntry<ENTITY> newEntry(ENTITY value, long loadTime){
+        if (!isExpiring()) {
+            return CacheEntry.of(value);
+        }
+        long now = System.currentTimeMillis();
+        Duration soft = this.softTtl != null ? this.softTtl : this.hardTtl;
+        return new CacheEntry<>(value, now, loadTime,
+                now + soft.toMillis(),
+                now + this.hardTtl.toMillis());
+    }
+
+    private Mono<ENTITY> load(KEY key){
+        return this.singleFlight ?
+                coalescedLoad(key) :
+                loadFromSource(key);
+    }
+
+    private Mono<ENTITY> loadFromSource(KEY key){
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return getFromSource(key)
+                    .doFinally(signal -> {
+                        this.loads.increment();
+                        this.loadNanos.add(System.nanoTime() - start);
+                    })
+                    .flatMap(e -> {
+                        if (!admit(key)) {
+                            // Served from the source, not written to the cache
+                            return Mono.just(e);
+                        }
+                        CacheEntry<ENTITY> entry = newEntry(e, (System.nanoTime() - start) / 1_000_000);
+                        return cacheCall(() -> updateEntryCache(key, entry), () -> Mono.just(e));
+                    })
+                    .switchIfEmpty(Mono.defer(() -> cacheNotFound(key)));
+        });
+    }
+
+    private boolean admit(KEY key){
+        AdmissionPolicy admission = this.admissionPolicy;
+        return admission == null || admission.admit(key);
+    }
+
+    private Map<KEY, ENTITY> admitted(Map<KEY, ENTITY> loaded){
+        if (this.admissionPolicy == null) {
+            return loaded;
+        }
+        Map<KEY, ENTITY> admitted = new LinkedHashMap<>();
+        loaded.forEach((key, entity) -> {
+            if (admit(key)) {
+                admitted.put(key, entity);
+            }
+        });
+        return admitted;
+    }
+
+    private Mono<ENTITY> cacheNotFound(KEY key){
+        Duration ttl = this.negativeTtl;
+        if (ttl == null) {
+            return Mono.empty();
+        }
+        return cacheCall(() -> updateTombstoneCache(key, CacheEntry.tombstone(ttl))
+                        .doOnSuccess(v -> this.negativeStores.increment()), Mono::empty)
+                .then(Mono.empty());
+    }
+
+    // Cache lookup of get(), timed for the hedge budget (cancelled lookups count with their time so far)
+    private Mono<CacheEntry<ENTITY>> lookup(KEY key, HedgePolicy hedge){
+        Mono<CacheEntry<ENTITY>> lookup = cacheCall(() -> getEntryFromCache(key), Mono::empty);
+        if (hedge == null) {
+            return lookup;
+        }
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return lookup.doFinally(signal -> hedge.recordLatency(System.nanoTime() - start));
+        });
+    }
+
+    /**
+     * Races the cache lookup against a source read started after the hedge budget,
+     * firstWithSignal cancels the loser. A fast cache miss wins the race too,
+     * the regular load then runs, so only slow lookups are hedged.
+     * The hedged source read does not write the cache, it would only add load to a cache
+     * that is already slow, and its errors are ignored so the cache lookup decides.
+     */
+    private Mono<Optional<ENTITY>> hedged(KEY key, Mono<Optional<ENTITY>> cached, HedgePolicy hedge){
+        return Mono.defer(() -> {
+            hedge.onRequest();
+            Mono<Optional<ENTITY>> backup = Mono.delay(hedge.getBudget())
+                    .flatMap(tick -> hedge.tryHedge() ?
+                            getFromSource(key)
+                                    .map(Optional::of)
+                                    .defaultIfEmpty(Optional.empty())
+                                    .doOnNext(e -> hedge.onHedgeWon())
+                                    .onErrorResume(e -> Mono.never()) :
+                            Mono.<Optional<ENTITY>>never());
+            return Mono.firstWithSignal(cached, backup);
+        });
+    }
+
+    // Also for the cache calls of subclass-specific operations
+    protected <T> Mono<T> cacheCall(Supplier<Mono<T>> call, Supplier<Mono<T>> fallback){
+        Supplier<Mono<T>> guarded = () -> this.pendingInvalidations.isEmpty() ?
+                call.get() :
+                invalidatePending().then(Mono.defer(call));
+        CacheCircuitBreaker breaker = this.circuitBreaker;
+        if (breaker == null) {
+            return Mono.defer(guarded)
+                    .onErrorResume(e -> fallback.get());
+        }
+        return breaker.call(guarded, fallback);
+    }
+
+    /**
+     * Cache write of a value the source already has: when skipped or failed,
+     * the key is invalidated later (see pendingInvalidations) and value is returned.
+     * A null key (keyOf not implemented) cannot be invalidated later.
+     */
+    protected <T> Mono<T> cacheWrite(KEY key, Supplier<Mono<T>> call, T value){
+        return cacheCall(call, () -> Mono.fromRunnable(() -> invalidateLater(key))
+                .then(Mono.justOrEmpty(value)));
+    }
+
+    protected void invalidateLater(KEY key){
+        if (key == null) {
+            return;
+        }
+        if (this.pendingInvalidations.put(key, this.invalidationSequence.incrementAndGet()) == null) {
+            this.skippedWrites.increment();
+        }
+    }
+
+    // One deletion round at a time, concurrent cache calls wait for it (cache()) instead of deleting again
+    private Mono<Void> invalidatePending(){
+        return Mono.defer(() -> {
+            Mono<Void> running = this.invalidating.get();
+            if (running != null) {
+                return running;
+            }
+            Map<KEY, Long> keys = new HashMap<>(this.pendingInvalidations);
+            AtomicReference<Mono<Void>> self = new AtomicReference<>();
+            Mono<Void> round = Flux.fromIterable(keys.entrySet())
+                    .flatMap(e -> deleteFromCache(e.getKey())
+                            .doOnSuccess(deleted -> this.pendingInvalidations.remove(e.getKey(), e.getValue())))
+                    .then()
+                    .doFinally(signal -> this.invalidating.compareAndSet(self.get(), null))
+                    .cache();
+            self.set(round);
+            return this.invalidating.compareAndSet(null, round) ? round : invalidatePending();
+        });
+    }
+
+    /**
+     * Key of an entity, used to invalidate the key of a skipped insertCache later.
+     * The default does not know it (null), subclasses whose entities carry their key override it.
+     */
+    protected KEY keyOf(ENTITY entity){
+        return null;
+    }
+
+    // XFetch: refresh when now - delta * beta * ln(rand) >= staleAt, rand in (0, 1]
+    private boolean shouldRefreshEarly(CacheEntry<?> entry, long now){
+        double rand = 1.0 - ThreadLocalRandom.current().nextDouble();
+        return now - entry.getLoadTime() * this.beta * Math.log(rand) >= entry.getStaleAt();
+    }
+
+    private void refreshIfNeeded(KEY key, CacheEntry<?> entry){
+        if (!isExpiring()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        if (entry.isStale(now)) {
+            this.staleHits.increment();
+        } else if (shouldRefreshEarly(entry, now)) {
+            this.earlyRefreshes.increment();
+        } else {
+            return;
+        }
+        if (!this.refreshing.add(key)) {
+            return;
+        }
+        // The caller already has the cached value, the refresh runs detached from its request.
+        // A key gone from the source is dropped from the cache instead of being served until the hard TTL
+        // (with negative caching the load already replaced it with a tombstone).
+        load(key)
+                .switchIfEmpty(Mono.defer(() -> isNegativeCaching() ?
+                        Mono.<Boolean>empty() :
+                        cacheCall(() -> deleteFromCache(key), Mono::empty)).then(Mono.empty()))
+                .doFinally(signal -> this.refreshing.remove(key))
+                .onErrorResume(e -> Mono.empty())
+                .subscribe();
+    }
+
+    /**
+     * cache() replays the result to every subscriber and, by design, cannot be cancelled,
+     * so a leader that cancels (e.g. client disconnect) does not abort the load
+     * for the callers that joined it.
+     *
+     * The removal is attached before cache(), so it runs once when the shared load terminates.
+     * A candidate Mono that loses the putIfAbsent race is never subscribed.
+     */
+    private Mono<ENTITY> coalescedLoad(KEY key){
+        Mono<ENTITY> flight = loadFromSource(key)
+                .doFinally(signal -> this.inFlightLoads.remove(key))
+                .cache();
+        Mono<ENTITY> existing = this.inFlightLoads.putIfAbsent(key, flight);
+        if (existing != null) {
+            this.coalescedLoads.increment();
+            return existing;
+        }
+        this.leaderLoads.increment();
+        return flight;
+    }
+
+    /**
+     * Entry operations used by get() and the loads, they carry the CacheEntry metadata.
+     * The defaults wrap the plain methods with an entry that never expires,
+     * subclasses that keep metadata in their cache override both.
+     */
+    protected Mono<CacheEntry<ENTITY>> getEntryFromCache(KEY key){
+        return getFromCache(key)
+                .map(CacheEntry::of);
+    }
+
+    protected Mono<ENTITY> updateEntryCache(KEY key, CacheEntry<ENTITY> entry){
+        return updateCache(key, entry.getValue());
+    }
+
+    /**
+     * Stores a tombstone for a key missing in the source, it must expire at tombstone.getExpireAt().
+     * The default does not cache anything, so negative caching has no effect.
+     */
+    protected Mono<Void> updateTombstoneCache(KEY key, CacheEntry<ENTITY> tombstone){
+        return Mono.empty();
+    }
+
+    /**
+     * Bulk operations used by getAll().
+     * The defaults fan out to the single-key methods,
+     * subclasses override them to use the bulk commands of their cache and source.
+     */
+    protected Mono<Map<KEY, ENTITY>> getAllFromCache(Set<KEY> keys){
+        return Flux.fromIterable(keys)
+                .flatMap(key -> getFromCache(key).map(e -> Map.entry(key, e)))
+                .collectMap(Map.Entry::getKey, Map.Entry::getValue);
+    }
+
+    protected Mono<Map<KEY, ENTITY>> getAllFromSource(Set<KEY> keys){
+        return Flux.fromIterable(keys)
+                .flatMap(key -> getFromSource(key).map(e -> Map.entry(key, e)))
+                .collectMap(Map.Entry::getKey, Map.Entry::getValue);
+    }
+
+    protected Mono<Map<KEY, ENTITY>> updateAllCache(Map<KEY, ENTITY> entities){
+        return Flux.fromIterable(entities.entrySet())
+                .flatMap(e -> updateCache(e.getKey(), e.getValue()))
+                .then(Mono.just(entities));
+    }
+
+    /**
+     * Writes a batch of coalesced updates to the source, used by write-behind.
+     * The default fans out to updateSource, subclasses override it with a multi-row write.
+     */
+    protected Mono<Void> updateAllSource(Map<KEY, ENTITY> entities){
+        return Flux.fromIterable(entities.entrySet())
+                .concatMap(e -> updateSource(e.getKey(), e.getValue()))
+                .then();
     }
 
     /**
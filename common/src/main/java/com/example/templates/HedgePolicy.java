@@ -0,0 +1,101 @@
+package com.example.templates;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Hedged reads for CacheTemplate.get():
+ *  - If the cache has not answered within the budget, the source is read in parallel
+ *    and the first answer wins, the other call is cancelled.
+ *  - Budget: the observed percentile (e.g. p95) of the recent cache lookups, never below minBudget.
+ *    A fixed budget is used when percentile is 0.
+ *  - Cap: every request earns maxRatio of a token, every hedge spends one token (at most MAX_TOKENS saved),
+ *    so at most ~maxRatio of the requests hedge, even when the cache is slow for every request.
+ */
+public class HedgePolicy {
+
+    private static final int SAMPLES = 1024;
+    private static final int RECOMPUTE_EVERY = 256;
+    // Tokens are kept in thousandths
+    private static final long TOKEN = 1000;
+    private static final long MAX_TOKENS = 10 * TOKEN;
+
+    private final long minBudgetNanos;
+    private final double percentile;
+    private final long tokensPerRequest;
+
+    // Recent cache lookup latencies (ring buffer), racy writes are fine for an estimate
+    private final long[] samples = new long[SAMPLES];
+    private final AtomicLong sampleCount = new AtomicLong();
+    private volatile long budgetNanos;
+
+    private final AtomicLong tokens = new AtomicLong();
+    private final LongAdder hedged = new LongAdder();
+    private final LongAdder won = new LongAdder();
+    private final LongAdder throttled = new LongAdder();
+
+    public HedgePolicy(Duration minBudget, double percentile, double maxRatio) {
+        this.minBudgetNanos = minBudget.toNanos();
+        this.percentile = percentile;
+        this.tokensPerRequest = Math.round(maxRatio * TOKEN);
+        this.budgetNanos = this.minBudgetNanos;
+    }
+
+    public Duration getBudget(){
+        return Duration.ofNanos(this.budgetNanos);
+    }
+
+    public void recordLatency(long nanos){
+        long n = this.sampleCount.getAndIncrement();
+        this.samples[(int) (n % SAMPLES)] = nanos;
+        if (this.percentile > 0 && n % RECOMPUTE_EVERY == RECOMPUTE_EVERY - 1) {
+            recomputeBudget();
+        }
+    }
+
+    private void recomputeBudget(){
+        int n = (int) Math.min(this.sampleCount.get(), SAMPLES);
+        long[] sorted = Arrays.copyOf(this.samples, n);
+        Arrays.sort(sorted);
+        int rank = (int) Math.ceil(this.percentile / 100 * n) - 1;
+        this.budgetNanos = Math.max(this.minBudgetNanos, sorted[Math.max(0, Math.min(n - 1, rank))]);
+    }
+
+    public void onRequest(){
+        this.tokens.accumulateAndGet(this.tokensPerRequest, (current, earned) -> Math.min(MAX_TOKENS, current + earned));
+    }
+
+    // Called when the budget has elapsed, false when the hedge cap is reached
+    public boolean tryHedge(){
+        while (true) {
+            long current = this.tokens.get();
+            if (current < TOKEN) {
+                this.throttled.increment();
+                return false;
+            }
+            if (this.tokens.compareAndSet(current, current - TOKEN)) {
+                this.hedged.increment();
+                return true;
+            }
+        }
+    }
+
+    // The source answered before the cache
+    public void onHedgeWon(){
+        this.won.increment();
+    }
+
+    public Map<String, Number> getStats(){
+        Map<String, Number> stats = new LinkedHashMap<>();
+        stats.put("hedge.budget-ms", this.budgetNanos / 1_000_000.0);
+        stats.put("hedge.fired", this.hedged.sum());
+        stats.put("hedge.won", this.won.sum());
+        stats.put("hedge.throttled", this.throttled.sum());
+        return stats;
+    }
+
+}
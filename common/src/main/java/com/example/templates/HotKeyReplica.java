@@ -0,0 +1,167 @@
+package com.example.templates;
+
+import com.example.sketch.CountMinSketch;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RTopicReactive;
+import org.redisson.api.RedissonReactiveClient;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * In-process replica of the hot keys only, for the flash-sale case where one key takes a large share
+ * of the reads and saturates its Redis shard and connection:
+ *
+ *  - Detection: a sampled read (sampleRate) increments a Count-Min sketch, halved every window.
+ *    The halving keeps about 2 windows of samples, so rate = estimate / sampleRate / (2 x window).
+ *  - Promotion: a key reaching threshold reads per second (and while fewer than maximumKeys are hot)
+ *    is served from the replica, loaded through the regular path and kept for ttl.
+ *  - Demotion: at the end of a window, a hot key below half the threshold leaves the replica.
+ *  - Changes: invalidate() drops the key locally and publishes it on a Redis topic,
+ *    the other nodes drop their replica too. A lost message is bounded by the (short) ttl.
+ */
+@Slf4j
+public class HotKeyReplica<KEY, ENTITY> implements AutoCloseable {
+
+    private final CountMinSketch sketch;
+    private final double sampleRate;
+    private final double threshold;
+    private final int maximumKeys;
+    private final double samplesPerRead;
+
+    private final Class<KEY> keyType;
+    private final Set<KEY> hotKeys = ConcurrentHashMap.newKeySet();
+    private final Cache<KEY, ENTITY> replica;
+
+    private final RTopicReactive topic;
+    private final Disposable subscription;
+    private final Disposable aging;
+    private final String nodeId = UUID.randomUUID().toString();
+
+    private final LongAdder promotions = new LongAdder();
+    private final LongAdder demotions = new LongAdder();
+    private final LongAdder replicaHits = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    public HotKeyReplica(RedissonReactiveClient client,
+                         Class<KEY> keyType,
+                         String topicName,
+                         double sampleRate,
+                         double threshold,
+                         int maximumKeys,
+                         Duration window,
+                         Duration ttl) {
+        this.sketch = new CountMinSketch(4096, 4);
+        this.keyType = keyType;
+        this.sampleRate = sampleRate;
+        this.threshold = threshold;
+        this.maximumKeys = maximumKeys;
+        // Sketch estimate → reads per second
+        this.samplesPerRead = sampleRate * 2 * window.toNanos() / 1e9;
+        this.replica = Caffeine.newBuilder()
+                .maximumSize(maximumKeys)
+                .expireAfterWrite(ttl)
+                .build();
+        this.topic = client.getTopic(topicName, NearCacheInvalidation.CODEC);
+        this.subscription = this.topic.getMessages(NearCacheInvalidation.class)
+                .filter(message -> !this.nodeId.equals(message.getOrigin()))
+                .subscribe(this::onInvalidation,
+                        e -> log.warn("Hot key invalidation listener stopped on {}", topicName, e));
+        this.aging = Flux.interval(window, window)
+                .subscribe(tick -> age());
+    }
+
+    /**
+     * Reads through the replica when the key is hot, otherwise calls the loader (the regular cache path).
+     */
+    public Mono<ENTITY> get(KEY key, Function<KEY, Mono<ENTITY>> loader){
+        return Mono.defer(() -> {
+            record(key);
+            if (!this.hotKeys.contains(key)) {
+                return loader.apply(key);
+            }
+            ENTITY cached = this.replica.getIfPresent(key);
+            if (cached != null) {
+                this.replicaHits.increment();
+                return Mono.just(cached);
+            }
+            return loader.apply(key)
+                    .doOnNext(value -> {
+                        if (this.hotKeys.contains(key)) {
+                            this.replica.put(key, value);
+                        }
+                    });
+        });
+    }
+
+    // The key changed: drop it here and on the other nodes
+    public Mono<Void> invalidate(KEY key){
+        // Published even when the key is not hot here, it may be hot on another node
+        this.replica.invalidate(key);
+        return this.topic.publish(new NearCacheInvalidation(this.nodeId, key))
+                .onErrorResume(e -> Mono.empty()) // Ignore Redis errors, the ttl bounds the staleness
+                .then();
+    }
+
+    public Set<KEY> getHotKeys(){
+        return Set.copyOf(this.hotKeys);
+    }
+
+    public Map<String, Number> getStats(){
+        Map<String, Number> stats = new LinkedHashMap<>();
+        stats.put("hotkeys.hot", this.hotKeys.size());
+        stats.put("hotkeys.promotions", this.promotions.sum());
+        stats.put("hotkeys.demotions", this.demotions.sum());
+        stats.put("hotkeys.replica.hits", this.replicaHits.sum());
+        stats.put("hotkeys.invalidations", this.invalidations.sum());
+        return stats;
+    }
+
+    @Override
+    public void close(){
+        this.aging.dispose();
+        this.subscription.dispose();
+    }
+
+    private void record(KEY key){
+        if (ThreadLocalRandom.current().nextDouble() >= this.sampleRate) {
+            return;
+        }
+        int estimate = this.sketch.increment(key);
+        if (estimate / this.samplesPerRead >= this.threshold
+                && this.hotKeys.size() < this.maximumKeys
+                && this.hotKeys.add(key)) {
+            this.promotions.increment();
+        }
+    }
+
+    // Demotion is checked before the halving, when the estimate holds the full 2 windows
+    private void age(){
+        for (KEY key : this.hotKeys) {
+            if (this.sketch.estimate(key) / this.samplesPerRead < this.threshold / 2) {
+                this.hotKeys.remove(key);
+                this.replica.invalidate(key);
+                this.demotions.increment();
+            }
+        }
+        this.sketch.halve();
+    }
+
+    private void onInvalidation(NearCacheInvalidation message){
+        this.invalidations.increment();
+        this.replica.invalidate(message.keyAs(this.keyType));
+    }
+
+}
@@ -0,0 +1,30 @@
+package com.example.templates;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.redisson.codec.TypedJsonJacksonCodec;
+
+/**
+ * Message published on the near cache topic when a key changes in the shared (L2) cache.
+ * `origin` is the id of the publishing node, so a node can skip its own messages.
+ *
+ * Published as JSON of this class only (CODEC): the topic is shared by every node,
+ * Java deserialization of its messages would run whatever class a message names.
+ * The key comes back as a JSON value (number, string ...), keyAs converts it to the key type.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class NearCacheInvalidation {
+
+    public static final TypedJsonJacksonCodec CODEC = new TypedJsonJacksonCodec(NearCacheInvalidation.class);
+
+    private String origin;
+    private Object key;
+
+    public <KEY> KEY keyAs(Class<KEY> keyType){
+        return CODEC.getObjectMapper().convertValue(this.key, keyType);
+    }
+
+}
@@ -0,0 +1,305 @@
+package com.example.templates;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RTopicReactive;
+import org.redisson.api.RedissonReactiveClient;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Two-tier near cache:
+ *  - L1: bounded in-heap cache on this node (size + TTL eviction), hot reads are a map lookup.
+ *  - L2: the wrapped CacheTemplate (e.g. a Redis hash), shared by all nodes.
+ *
+ * Any CacheTemplate subclass can be wrapped, source operations are passed through unchanged.
+ *
+ * Invalidation:
+ *  - insertCache, updateCache and deleteFromCache publish the key on a Redis topic.
+ *    keyOf gives the key of an inserted entity.
+ *  - Every other node drops the key from its L1, so the next read goes to L2.
+ *  - Pub/sub is fire-and-forget: a message lost during a reconnect is bounded by the L1 TTL.
+ *
+ * Circuit breaker: only the L2 calls go through it. L1 hits are served while it is open
+ * and are not recorded as cache successes, which would hide a failing L2.
+ * A skipped or failed L2 write drops the key from L1 and leaves the key to be deleted from L2
+ * once it is reachable again (CacheTemplate.invalidateLater).
+ *
+ * L1 keeps the CacheEntry (value + metadata), so soft/hard TTL apply to L1 hits as well.
+ * setExpiration is forwarded to the wrapped template, which stores the entries in L2.
+ */
+@Slf4j
+public class NearCacheTemplate<KEY, ENTITY> extends CacheTemplate<KEY, ENTITY> implements AutoCloseable {
+
+    private final CacheTemplate<KEY, ENTITY> delegate;
+    private final Function<ENTITY, KEY> keyOf;
+    private final Class<KEY> keyType;
+    private final Cache<KEY, CacheEntry<ENTITY>> localCache;
+    private final RTopicReactive topic;
+    private final Disposable subscription;
+    private volatile CacheCircuitBreaker l2Breaker;
+    // Identifies this node, to ignore invalidations published by itself
+    private final String nodeId = UUID.randomUUID().toString();
+
+    private final LongAdder l1Hits = new LongAdder();
+    private final LongAdder l2Hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public NearCacheTemplate(CacheTemplate<KEY, ENTITY> delegate,
+                             Function<ENTITY, KEY> keyOf,
+                             Class<KEY> keyType,
+                             RedissonReactiveClient client,
+                             String topicName,
+                             long maximumSize,
+                             Duration ttl) {
+        this.delegate = delegate;
+        this.keyOf = keyOf;
+        this.keyType = keyType;
+        this.localCache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .build();
+        this.topic = client.getTopic(topicName, NearCacheInvalidation.CODEC);
+        this.subscription = this.topic.getMessages(NearCacheInvalidation.class)
+                .filter(message -> !this.nodeId.equals(message.getOrigin()))
+                .subscribe(this::onInvalidation,
+                        e -> log.warn("Near cache invalidation listener stopped on {}", topicName, e));
+    }
+
+    private void onInvalidation(NearCacheInvalidation message){
+        this.localCache.invalidate(message.keyAs(this.keyType));
+    }
+
+    // Without a breaker, an L2 error is handled by CacheTemplate.cacheCall
+    private <T> Mono<T> l2Call(Supplier<Mono<T>> call, Supplier<Mono<T>> fallback){
+        CacheCircuitBreaker breaker = this.l2Breaker;
+        return breaker == null ? Mono.defer(call) : breaker.call(call, fallback);
+    }
+
+    // False when L2 was skipped or failed: L1 drops the key, it must not keep a value L2 did not get,
+    // and L2 may still hold the previous value
+    private Mono<Boolean> l2Write(KEY key, Supplier<Mono<?>> call){
+        return l2Call(() -> call.get().thenReturn(true),
+                () -> Mono.fromRunnable(() -> {
+                    this.localCache.invalidate(key);
+                    invalidateLater(key);
+                }).thenReturn(false));
+    }
+
+    private Mono<Void> storeLocal(KEY key, CacheEntry<ENTITY> entry, boolean stored){
+        if (!stored) {
+            return Mono.empty();
+        }
+        this.localCache.put(key, entry);
+        return publishInvalidation(key);
+    }
+
+    private Mono<Void> publishInvalidation(KEY key){
+        return this.topic.publish(new NearCacheInvalidation(this.nodeId, key))
+                .onErrorResume(e -> Mono.empty()) // Ignore Redis errors, L1 TTL bounds the staleness
+                .then();
+    }
+
+    @Override
+    protected Mono<ENTITY> insertSource(ENTITY entity) {
+        return this.delegate.insertSource(entity);
+    }
+
+    @Override
+    protected Mono<ENTITY> insertCache(ENTITY entity) {
+        // Replaces a tombstone another node may still hold in L1
+        KEY key = this.keyOf.apply(entity);
+        return l2Write(key, () -> this.delegate.insertCache(entity))
+                .flatMap(stored -> storeLocal(key, newEntry(entity, 0), stored))
+                .thenReturn(entity);
+    }
+
+    @Override
+    protected KEY keyOf(ENTITY entity) {
+        return this.keyOf.apply(entity);
+    }
+
+    @Override
+    protected Mono<ENTITY> getFromSource(KEY key) {
+        return this.delegate.getFromSource(key);
+    }
+
+    @Override
+    protected Mono<ENTITY> getFromCache(KEY key) {
+        return getEntryFromCache(key)
+                .mapNotNull(CacheEntry::getValue);
+    }
+
+    @Override
+    protected Mono<CacheEntry<ENTITY>> getEntryFromCache(KEY key) {
+        return Mono.defer(() -> {
+            CacheEntry<ENTITY> local = this.localCache.getIfPresent(key);
+            if (local != null) {
+                this.l1Hits.increment();
+                return Mono.just(local);
+            }
+            return l2Call(() -> this.delegate.getEntryFromCache(key), Mono::empty)
+                    .doOnNext(entry -> {
+                        this.l2Hits.increment();
+                        this.localCache.put(key, entry);
+                    })
+                    .switchIfEmpty(Mono.fromRunnable(this.misses::increment));
+        });
+    }
+
+    @Override
+    protected Mono<ENTITY> updateSource(KEY key, ENTITY entity) {
+        return this.delegate.updateSource(key, entity);
+    }
+
+    @Override
+    protected Mono<ENTITY> updateCache(KEY key, ENTITY entity) {
+        return l2Write(key, () -> this.delegate.updateCache(key, entity))
+                .flatMap(stored -> storeLocal(key, newEntry(entity, 0), stored))
+                .thenReturn(entity);
+    }
+
+    @Override
+    protected Mono<ENTITY> updateEntryCache(KEY key, CacheEntry<ENTITY> entry) {
+        return l2Write(key, () -> this.delegate.updateEntryCache(key, entry))
+                .flatMap(stored -> storeLocal(key, entry, stored))
+                .then(Mono.justOrEmpty(entry.getValue()));
+    }
+
+    @Override
+    protected Mono<Void> updateAllSource(Map<KEY, ENTITY> entities) {
+        return this.delegate.updateAllSource(entities);
+    }
+
+    @Override
+    protected Mono<Void> updateTombstoneCache(KEY key, CacheEntry<ENTITY> tombstone) {
+        return l2Write(key, () -> this.delegate.updateTombstoneCache(key, tombstone))
+                .flatMap(stored -> storeLocal(key, tombstone, stored));
+    }
+
+    @Override
+    protected Mono<Boolean> deleteFromSource(KEY key) {
+        return this.delegate.deleteFromSource(key);
+    }
+
+    @Override
+    protected Mono<Boolean> deleteFromCache(KEY key) {
+        return Mono.fromRunnable(() -> this.localCache.invalidate(key))
+                .then(l2Call(() -> this.delegate.deleteFromCache(key),
+                        () -> Mono.fromRunnable(() -> invalidateLater(key)).thenReturn(false)))
+                .flatMap(deleted -> publishInvalidation(key).thenReturn(deleted));
+    }
+
+    @Override
+    protected Mono<Map<KEY, ENTITY>> getAllFromCache(Set<KEY> keys) {
+        return Mono.defer(() -> {
+            long now = System.currentTimeMillis();
+            Map<KEY, ENTITY> hits = new HashMap<>();
+            this.localCache.getAllPresent(keys).forEach((key, entry) -> {
+                if (!entry.isExpired(now)) {
+                    hits.put(key, entry.getValue());
+                }
+            });
+            this.l1Hits.add(hits.size());
+            if (hits.size() == keys.size()) {
+                return Mono.just(hits);
+            }
+            Set<KEY> remaining = new LinkedHashSet<>(keys);
+            remaining.removeAll(hits.keySet());
+            return l2Call(() -> this.delegate.getAllFromCache(remaining), () -> Mono.just(Map.<KEY, ENTITY>of()))
+                    .map(l2 -> {
+                        this.l2Hits.add(l2.size());
+                        this.misses.add(remaining.size() - l2.size());
+                        l2.forEach((key, e) -> {
+                            // Tombstones (null) are only kept in L2, with their own TTL
+                            if (e != null) {
+                                this.localCache.put(key, newEntry(e, 0));
+                            }
+                        });
+                        hits.putAll(l2);
+                        return hits;
+                    });
+        });
+    }
+
+    @Override
+    protected Mono<Map<KEY, ENTITY>> getAllFromSource(Set<KEY> keys) {
+        return this.delegate.getAllFromSource(keys);
+    }
+
+    @Override
+    protected Mono<Map<KEY, ENTITY>> updateAllCache(Map<KEY, ENTITY> entities) {
+        // Nothing written when L2 is skipped
+        return l2Call(() -> this.delegate.updateAllCache(entities),
+                        () -> Mono.fromRunnable(() -> this.localCache.invalidateAll(entities.keySet()))
+                                .then(Mono.just(Map.<KEY, ENTITY>of())))
+                .doOnNext(written -> written.forEach((key, e) ->
+                        this.localCache.put(key, newEntry(e, 0))))
+                .flatMap(written -> Flux.fromIterable(written.keySet())
+                        .flatMap(this::publishInvalidation)
+                        .then(Mono.just(written)));
+    }
+
+    /**
+     * The breaker guards the L2 calls made here, CacheTemplate's own cache calls only get the error fallback.
+     */
+    @Override
+    public CacheTemplate<KEY, ENTITY> setCircuitBreaker(CacheCircuitBreaker circuitBreaker) {
+        this.l2Breaker = circuitBreaker;
+        return this;
+    }
+
+    @Override
+    public CacheTemplate<KEY, ENTITY> setExpiration(Duration softTtl, Duration hardTtl, double beta) {
+        this.delegate.setExpiration(softTtl, hardTtl, beta);
+        return super.setExpiration(softTtl, hardTtl, beta);
+    }
+
+    // L1 hits over all reads
+    public double getL1HitRatio(){
+        long l1 = this.l1Hits.sum();
+        long total = l1 + this.l2Hits.sum() + this.misses.sum();
+        return total == 0 ? 0 : (double) l1 / total;
+    }
+
+    // L2 hits over the reads that missed L1
+    public double getL2HitRatio(){
+        long l2 = this.l2Hits.sum();
+        long total = l2 + this.misses.sum();
+        return total == 0 ? 0 : (double) l2 / total;
+    }
+
+    @Override
+    public Map<String, Number> getStats(){
+        Map<String, Number> stats = super.getStats();
+        stats.put("l1.hits", this.l1Hits.sum());
+        stats.put("l1.size", this.localCache.estimatedSize());
+        stats.put("l1.hit-ratio", getL1HitRatio());
+        stats.put("l2.hits", this.l2Hits.sum());
+        stats.put("l2.hit-ratio", getL2HitRatio());
+        stats.put("l2.misses", this.misses.sum());
+        CacheCircuitBreaker breaker = this.l2Breaker;
+        if (breaker != null) {
+            stats.putAll(breaker.getStats());
+        }
+        return stats;
+    }
+
+    @Override
+    public void close() {
+        this.subscription.dispose();
+    }
+
+}
@@ -0,0 +1,18 @@
+package com.example.templates;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One queued write of the write-behind stream: the key and the value written to the cache.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class WriteBehindEntry<KEY, ENTITY> {
+
+    private KEY key;
+    private ENTITY value;
+
+}
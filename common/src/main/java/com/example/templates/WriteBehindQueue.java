@@ -0,0 +1,294 @@
+package com.example.templates;
+
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.AutoClaimResult;
+import org.redisson.api.PendingEntry;
+import org.redisson.api.RLockReactive;
+import org.redisson.api.RStreamReactive;
+import org.redisson.api.RedissonReactiveClient;
+import org.redisson.api.StreamMessageId;
+import org.redisson.api.stream.StreamAddArgs;
+import org.redisson.api.stream.StreamCreateGroupArgs;
+import org.redisson.api.stream.StreamReadGroupArgs;
+import org.redisson.client.codec.Codec;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Durable write-behind queue, backed by a Redis stream:
+ *
+ *  - enqueue() appends the written value to the stream (XADD), the caller does not wait for the source.
+ *  - Every flushInterval, a flusher reads up to flushSize entries through a consumer group (XREADGROUP),
+ *    keeps only the latest value per key (coalescing) and writes them to the source in one batch.
+ *    Entries are acknowledged and deleted (XACK + XDEL) only after the batch is written.
+ *  - Batches of flushSize are drained back to back until the stream is empty.
+ *
+ * Replay:
+ *  - A batch that failed, or that was read by a node that crashed before acknowledging it,
+ *    stays pending in the consumer group and is written again before any new entry.
+ *  - Nodes flush under a Redis lock, one node at a time, so batches reach the source in stream order
+ *    (last write wins). Each node reads as its own consumer and first claims (XAUTOCLAIM) every entry
+ *    left pending by the others, so any node replays them.
+ *  - The lock has no fixed lease: the Redisson watchdog renews it for as long as the flush runs,
+ *    and lets it expire if the node dies, so two nodes never flush at the same time.
+ *
+ * Poison entries:
+ *  - A batch that keeps failing (constraint violation, deleted row ...) would be read first on every flush
+ *    and stall the whole queue. Once its entries have been delivered maxDeliveries times (XPENDING),
+ *    they are written one at a time: the ones that still fail are moved to the <stream>:dead-letter stream
+ *    and acknowledged, the others are written normally.
+ *
+ * Back-pressure:
+ *  - Writers wait while the backlog is at maxQueueSize, and fail after backPressureTimeout.
+ */
+@Slf4j
+public class WriteBehindQueue<KEY, ENTITY> implements AutoCloseable {
+
+    private static final String FIELD = "entry";
+    private static final String GROUP = "flusher";
+    private static final Duration BACK_PRESSURE_POLL = Duration.ofMillis(10);
+
+    private final RStreamReactive<String, WriteBehindEntry<KEY, ENTITY>> stream;
+    private final RStreamReactive<String, WriteBehindEntry<KEY, ENTITY>> deadLetters;
+    private final RLockReactive lock;
+    // Lock owner id and consumer name of this node
+    private final long lockId = ThreadLocalRandom.current().nextLong();
+    private final String consumer = "flusher-" + ManagementFactory.getRuntimeMXBean().getName();
+    private final int flushSize;
+    private final Duration flushInterval;
+    private final long maxQueueSize;
+    private final Duration backPressureTimeout;
+    private final int maxDeliveries;
+
+    // Stream length as of the last flush, plus the writes enqueued by this node since
+    private final AtomicLong backlog = new AtomicLong();
+    private final LongAdder enqueued = new LongAdder();
+    private final LongAdder flushed = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder failedBatches = new LongAdder();
+    private final LongAdder deadLettered = new LongAdder();
+
+    private Function<Map<KEY, ENTITY>, Mono<Void>> writer;
+    private Disposable flusher;
+
+    /**
+     * @param codec encodes the stream field name (String) and the WriteBehindEntry values
+     */
+    public WriteBehindQueue(RedissonReactiveClient client,
+                            String streamName,
+                            Codec codec,
+                            int flushSize,
+                            Duration flushInterval,
+                            long maxQueueSize,
+                            Duration backPressureTimeout,
+                            int maxDeliveries) {
+        this.stream = client.getStream(streamName, codec);
+        this.deadLetters = client.getStream(streamName + ":dead-letter", codec);
+        this.lock = client.getLock(streamName + ":lock");
+        this.flushSize = flushSize;
+        this.flushInterval = flushInterval;
+        this.maxQueueSize = maxQueueSize;
+        this.backPressureTimeout = backPressureTimeout;
+        this.maxDeliveries = maxDeliveries;
+    }
+
+    /**
+     * Starts the flusher, writer persists one coalesced batch to the source.
+     */
+    public synchronized void start(Function<Map<KEY, ENTITY>, Mono<Void>> writer){
+        if (this.flusher != null) {
+            return;
+        }
+        this.writer = writer;
+        this.flusher = this.stream.createGroup(StreamCreateGroupArgs.name(GROUP)
+                        .id(StreamMessageId.ALL) // also replay entries added before the group existed
+                        .makeStream())
+                .onErrorResume(e -> Mono.empty()) // BUSYGROUP: the group already exists
+                .thenMany(Flux.interval(this.flushInterval))
+                .onBackpressureDrop()
+                .concatMap(tick -> flush().then(refreshBacklog()))
+                .subscribe();
+    }
+
+    /**
+     * Waits until the backlog is below maxQueueSize.
+     * Called before anything is queued or cached, so a rejected write changes nothing.
+     */
+    public Mono<Void> awaitCapacity(){
+        return Mono.defer(() -> this.backlog.get() < this.maxQueueSize ?
+                        Mono.just(true) :
+                        Mono.<Boolean>empty())
+                .repeatWhenEmpty(attempts -> attempts.delayElements(BACK_PRESSURE_POLL))
+                .timeout(this.backPressureTimeout,
+                        Mono.error(new TimeoutException("Write-behind queue is full: " + this.stream.getName())))
+                .then();
+    }
+
+    public Mono<Void> enqueue(KEY key, ENTITY value){
+        return this.stream.add(StreamAddArgs.entry(FIELD, new WriteBehindEntry<>(key, value)))
+                .doOnSuccess(id -> {
+                    this.backlog.incrementAndGet();
+                    this.enqueued.increment();
+                })
+                .then();
+    }
+
+    private Mono<Void> flush(){
+        // No lease time: renewed by the watchdog until unlock
+        return this.lock.tryLock(this.lockId)
+                .flatMap(locked -> {
+                    if (!locked) {
+                        return Mono.empty(); // Another node is flushing
+                    }
+                    // Pending entries first, they are older than the never delivered ones
+                    return claimPending()
+                            .then(drain(StreamReadGroupArgs.greaterThan(StreamMessageId.ALL)))
+                            .then(drain(StreamReadGroupArgs.neverDelivered()))
+                            .onErrorResume(e -> {
+                                this.failedBatches.increment();
+                                log.warn("Write-behind flush of {} failed, retrying on next flush",
+                                        this.stream.getName(), e);
+                                return Mono.empty();
+                            })
+                            .then(Mono.defer(() -> this.lock.unlock(this.lockId)));
+                })
+                .onErrorResume(e -> Mono.empty());
+    }
+
+    /**
+     * Every node refreshes its backlog on each tick, not only the lock holder,
+     * otherwise the counter of the other nodes only grows and awaitCapacity ends up rejecting every write.
+     */
+    private Mono<Void> refreshBacklog(){
+        return this.stream.size()
+                .doOnNext(this.backlog::set)
+                .onErrorResume(e -> Mono.empty())
+                .then();
+    }
+
+    /**
+     * Moves the entries pending for other consumers (a node that failed or died mid-flush) to this one.
+     * Safe with no idle time: under the lock, no other node is flushing them.
+     */
+    private Mono<Void> claimPending(){
+        return claimFrom(StreamMessageId.MIN)
+                .expand(result -> StreamMessageId.MIN.equals(result.getNextId()) ?
+                        Mono.empty() :
+                        claimFrom(result.getNextId()))
+                .then();
+    }
+
+    private Mono<AutoClaimResult<String, WriteBehindEntry<KEY, ENTITY>>> claimFrom(StreamMessageId start){
+        return this.stream.autoClaim(GROUP, this.consumer, 0, TimeUnit.MILLISECONDS, start, this.flushSize);
+    }
+
+    // Flushes batches until one is not full
+    private Mono<Void> drain(StreamReadGroupArgs args){
+        return flushBatch(args)
+                .expand(count -> count >= this.flushSize ?
+                        flushBatch(args) :
+                        Mono.empty())
+                .then();
+    }
+
+    private Mono<Integer> flushBatch(StreamReadGroupArgs args){
+        return this.stream.readGroup(GROUP, this.consumer, args.count(this.flushSize))
+                .defaultIfEmpty(Map.of())
+                .flatMap(messages -> {
+                    if (messages.isEmpty()) {
+                        return Mono.just(0);
+                    }
+                    // Messages come in stream order, a later write to the same key replaces the earlier one
+                    Map<KEY, ENTITY> latest = new LinkedHashMap<>();
+                    messages.values().forEach(fields -> {
+                        WriteBehindEntry<KEY, ENTITY> entry = fields.get(FIELD);
+                        if (entry != null) {
+                            latest.put(entry.getKey(), entry.getValue());
+                        }
+                    });
+                    StreamMessageId[] ids = messages.keySet().toArray(new StreamMessageId[0]);
+                    // Only unreadable entries: nothing to write, they are acknowledged and deleted
+                    Mono<Void> write = latest.isEmpty() ? Mono.empty() : this.writer.apply(latest);
+                    return write
+                            .then(complete(ids))
+                            .doOnSuccess(v -> {
+                                this.batches.increment();
+                                this.flushed.add(latest.size());
+                                this.coalesced.add(messages.size() - latest.size());
+                            })
+                            .thenReturn(messages.size())
+                            .onErrorResume(e -> deliveries(ids)
+                                    .flatMap(count -> count < this.maxDeliveries ?
+                                            Mono.<Integer>error(e) :
+                                            isolate(messages).thenReturn(messages.size())));
+                });
+    }
+
+    // Highest delivery count of the batch's entries
+    private Mono<Long> deliveries(StreamMessageId[] ids){
+        return this.stream.listPending(GROUP, ids[0], ids[ids.length - 1], ids.length)
+                .map(pending -> pending.stream()
+                        .mapToLong(PendingEntry::getLastTimeDelivered)
+                        .max()
+                        .orElse(0));
+    }
+
+    // One write per entry, in stream order, an entry that still fails goes to the dead-letter stream
+    private Mono<Void> isolate(Map<StreamMessageId, Map<String, WriteBehindEntry<KEY, ENTITY>>> messages){
+        return Flux.fromIterable(messages.entrySet())
+                .concatMap(message -> {
+                    WriteBehindEntry<KEY, ENTITY> entry = message.getValue().get(FIELD);
+                    Mono<Void> write = entry == null ?
+                            Mono.empty() :
+                            this.writer.apply(Map.of(entry.getKey(), entry.getValue()))
+                                    .doOnSuccess(v -> this.flushed.increment())
+                                    .onErrorResume(e -> {
+                                        log.warn("Write-behind entry {} of {} failed {} times, moved to the dead-letter stream",
+                                                message.getKey(), this.stream.getName(), this.maxDeliveries, e);
+                                        this.deadLettered.increment();
+                                        return this.deadLetters.add(StreamAddArgs.entry(FIELD, entry)).then();
+                                    });
+                    return write.then(complete(new StreamMessageId[]{message.getKey()}));
+                })
+                .then();
+    }
+
+    private Mono<Void> complete(StreamMessageId[] ids){
+        return this.stream.ack(GROUP, ids)
+                .then(this.stream.remove(ids))
+                .then();
+    }
+
+    public Map<String, Number> getStats(){
+        Map<String, Number> stats = new LinkedHashMap<>();
+        stats.put("write-behind.backlog", this.backlog.get());
+        stats.put("write-behind.enqueued", this.enqueued.sum());
+        stats.put("write-behind.flushed", this.flushed.sum());
+        stats.put("write-behind.coalesced", this.coalesced.sum());
+        stats.put("write-behind.batches", this.batches.sum());
+        stats.put("write-behind.failed-batches", this.failedBatches.sum());
+        stats.put("write-behind.dead-lettered", this.deadLettered.sum());
+        return stats;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (this.flusher != null) {
+            this.flusher.dispose();
+        }
+    }
+
+}
@@ -0,0 +1,67 @@
+package com.example.sketch;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+public class CountMinSketchTest {
+
+    @Test
+    public void widthIsRoundedUpToAPowerOfTwo(){
+        Assertions.assertEquals(1024, new CountMinSketch(1000, 4).getWidth());
+        Assertions.assertEquals(1024, new CountMinSketch(1024, 4).getWidth());
+    }
+
+    @Test
+    public void estimatesAreWithinTheErrorBound(){
+        CountMinSketch sketch = new CountMinSketch(1024, 4);
+        Random random = new Random(42);
+        Map<Integer, Integer> exact = new HashMap<>();
+        int total = 200_000;
+        for (int i = 0; i < total; i++) {
+            // A few heavy keys over a long tail
+            int key = random.nextInt(10) == 0 ? random.nextInt(10) : random.nextInt(20_000);
+            sketch.increment(key);
+            exact.merge(key, 1, Integer::sum);
+        }
+
+        double bound = 2.0 * total / sketch.getWidth();
+        int over = 0;
+        for (Map.Entry<Integer, Integer> e : exact.entrySet()) {
+            int estimate = sketch.estimate(e.getKey());
+            Assertions.assertTrue(estimate >= e.getValue(), "underestimated " + e.getKey());
+            if (estimate - e.getValue() > bound) {
+                over++;
+            }
+        }
+        // Each key exceeds the bound with a probability below 2^-depth
+        Assertions.assertTrue(over <= exact.size() / 16, over + " keys over the bound");
+    }
+
+    @Test
+    public void incrementReturnsTheNewEstimate(){
+        CountMinSketch sketch = new CountMinSketch(64, 4);
+        Assertions.assertEquals(0, sketch.estimate("a"));
+        Assertions.assertEquals(1, sketch.increment("a"));
+        Assertions.assertEquals(2, sketch.increment("a"));
+        Assertions.assertEquals(2, sketch.estimate("a"));
+    }
+
+    @Test
+    public void halveDividesTheEstimates(){
+        CountMinSketch sketch = new CountMinSketch(64, 4);
+        for (int i = 0; i < 9; i++) {
+            sketch.increment("a");
+        }
+        sketch.halve();
+        Assertions.assertEquals(4, sketch.estimate("a"));
+        sketch.halve();
+        sketch.halve();
+        sketch.halve();
+        Assertions.assertEquals(0, sketch.estimate("a"));
+    }
+
+}
@@ -0,0 +1,103 @@
+package com.example.sketch;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+public class SpaceSavingTest {
+
+    // Skewed stream over 1000 items: item i is drawn with a weight of 1 / (i + 1)
+    private static Map<Integer, Long> offerZipf(SpaceSaving<Integer> summary, int offers){
+        int items = 1000;
+        double[] cumulative = new double[items];
+        double sum = 0;
+        for (int i = 0; i < items; i++) {
+            sum += 1.0 / (i + 1);
+            cumulative[i] = sum;
+        }
+        Random random = new Random(42);
+        Map<Integer, Long> exact = new HashMap<>();
+        for (int n = 0; n < offers; n++) {
+            double r = random.nextDouble() * sum;
+            int item = 0;
+            while (cumulative[item] < r) {
+                item++;
+            }
+            summary.offer(item, 1);
+            exact.merge(item, 1L, Long::sum);
+        }
+        return exact;
+    }
+
+    @Test
+    public void countsAreBoundedByError(){
+        SpaceSaving<Integer> summary = new SpaceSaving<>(50);
+        Map<Integer, Long> exact = offerZipf(summary, 100_000);
+
+        List<SpaceSaving.Counter<Integer>> top = summary.top(50);
+        Assertions.assertEquals(50, top.size());
+        for (SpaceSaving.Counter<Integer> counter : top) {
+            long count = exact.getOrDefault(counter.getItem(), 0L);
+            Assertions.assertTrue(counter.getCount() - counter.getError() <= count,
+                    "lower bound of " + counter.getItem());
+            Assertions.assertTrue(count <= counter.getCount(),
+                    "upper bound of " + counter.getItem());
+            // The error is at most total / capacity
+            Assertions.assertTrue(counter.getError() <= summary.getTotal() / summary.getCapacity());
+        }
+    }
+
+    @Test
+    public void frequentItemsAreTracked(){
+        SpaceSaving<Integer> summary = new SpaceSaving<>(50);
+        Map<Integer, Long> exact = offerZipf(summary, 100_000);
+
+        long threshold = summary.getTotal() / summary.getCapacity();
+        List<Integer> tracked = summary.top(50).stream().map(SpaceSaving.Counter::getItem).toList();
+        exact.forEach((item, count) -> {
+            if (count > threshold) {
+                Assertions.assertTrue(tracked.contains(item), item + " seen " + count + " times");
+            } else if (!tracked.contains(item)) {
+                Assertions.assertTrue(count <= summary.getMinCount(), "untracked " + item);
+            }
+        });
+    }
+
+    @Test
+    public void topIsSortedAndExactBeforeEviction(){
+        SpaceSaving<String> summary = new SpaceSaving<>(3);
+        summary.offer("a", 5);
+        summary.offer("b", 7);
+        summary.offer("c", 1);
+
+        List<SpaceSaving.Counter<String>> top = summary.top(2);
+        Assertions.assertEquals(List.of("b", "a"), top.stream().map(SpaceSaving.Counter::getItem).toList());
+        Assertions.assertEquals(0, top.get(0).getError());
+        Assertions.assertEquals(1, summary.getMinCount());
+
+        // Takes over the smallest counter (c: 1)
+        summary.offer("d", 2);
+        SpaceSaving.Counter<String> d = summary.top(3).stream().filter(c -> c.getItem().equals("d")).findFirst().orElseThrow();
+        Assertions.assertEquals(3, d.getCount());
+        Assertions.assertEquals(1, d.getError());
+    }
+
+    @Test
+    public void decayScalesAndFreesCounters(){
+        SpaceSaving<String> summary = new SpaceSaving<>(3);
+        summary.offer("a", 10);
+        summary.offer("b", 1);
+
+        summary.decay(0.5);
+
+        List<SpaceSaving.Counter<String>> top = summary.top(3);
+        Assertions.assertEquals(1, top.size());
+        Assertions.assertEquals(5, top.get(0).getCount());
+        Assertions.assertEquals(5, summary.getTotal());
+    }
+
+}
@@ -0,0 +1,96 @@
+package com.example.templates;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+public class BatchLoaderTest {
+
+    // Records the key sets of the bulk calls, a key maps to "v" + key
+    private final List<Set<Integer>> calls = new CopyOnWriteArrayList<>();
+
+    private Mono<Map<Integer, String>> bulk(Set<Integer> keys){
+        this.calls.add(keys);
+        Map<Integer, String> values = new HashMap<>();
+        keys.forEach(key -> values.put(key, "v" + key));
+        return Mono.just(values);
+    }
+
+    @Test
+    public void dispatchOnWindow(){
+        BatchLoader<Integer, String> loader = new BatchLoader<>(this::bulk, Duration.ofMillis(50), 100);
+
+        StepVerifier.create(Mono.zip(loader.load(1), loader.load(2), loader.load(3)))
+                .assertNext(values -> {
+                    Assertions.assertEquals("v1", values.getT1());
+                    Assertions.assertEquals("v2", values.getT2());
+                    Assertions.assertEquals("v3", values.getT3());
+                })
+                .verifyComplete();
+
+        Assertions.assertEquals(List.of(Set.of(1, 2, 3)), this.calls);
+        Assertions.assertEquals(1L, loader.getStats().get("batches"));
+        Assertions.assertEquals(3L, loader.getStats().get("requests"));
+    }
+
+    @Test
+    public void dispatchOnMaxBatchSize(){
+        // The window never ends within the test: only the size limit can dispatch
+        BatchLoader<Integer, String> loader = new BatchLoader<>(this::bulk, Duration.ofHours(1), 2);
+
+        StepVerifier.create(Mono.zip(loader.load(1), loader.load(2)))
+                .expectNextCount(1)
+                .expectComplete()
+                .verify(Duration.ofSeconds(1));
+
+        Assertions.assertEquals(List.of(Set.of(1, 2)), this.calls);
+    }
+
+    @Test
+    public void duplicateKeysShareOneSlot(){
+        BatchLoader<Integer, String> loader = new BatchLoader<>(this::bulk, Duration.ofMillis(20), 2);
+
+        StepVerifier.create(Flux.merge(loader.load(7), loader.load(7), loader.load(7)).collectList())
+                .assertNext(values -> Assertions.assertEquals(List.of("v7", "v7", "v7"), values))
+                .verifyComplete();
+
+        Assertions.assertEquals(List.of(Set.of(7)), this.calls);
+        Assertions.assertEquals(1L, loader.getStats().get("keys"));
+    }
+
+    @Test
+    public void missingKeyCompletesEmpty(){
+        BatchLoader<Integer, String> loader = new BatchLoader<>(keys -> Mono.just(Map.of(1, "v1")), Duration.ofMillis(20), 10);
+
+        StepVerifier.create(loader.load(2))
+                .verifyComplete();
+    }
+
+    @Test
+    public void errorFansOutToEveryCaller(){
+        BatchLoader<Integer, String> loader = new BatchLoader<>(
+                keys -> Mono.error(new IllegalStateException("source down")), Duration.ofMillis(20), 10);
+
+        StepVerifier.create(loader.load(1))
+                .expectErrorMessage("source down")
+                .verify(Duration.ofSeconds(1));
+
+        // Both callers of one batch get the error
+        StepVerifier.create(Flux.merge(
+                        loader.load(1).onErrorResume(e -> Mono.just("error:" + e.getMessage())),
+                        loader.load(2).onErrorResume(e -> Mono.just("error:" + e.getMessage())))
+                        .collectList())
+                .assertNext(values -> Assertions.assertEquals(List.of("error:source down", "error:source down"), values))
+                .verifyComplete();
+    }
+
+}
@@ -0,0 +1,130 @@
+package com.example.templates;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+
+public class CacheCircuitBreakerTest {
+
+    private static final Duration OPEN_DURATION = Duration.ofMillis(50);
+
+    // Window of 10 calls, opens at 50% failures (after 4 calls) or 50% calls over 100 ms, 2 trial calls
+    private CacheCircuitBreaker breaker(){
+        return new CacheCircuitBreaker("test", 10, 4, 50, 50,
+                Duration.ofMillis(100), Duration.ofMillis(50), OPEN_DURATION, 2);
+    }
+
+    private static void fail(CacheCircuitBreaker breaker, int calls){
+        for (int i = 0; i < calls; i++) {
+            Assertions.assertTrue(breaker.tryAcquire());
+            breaker.onError();
+        }
+    }
+
+    private static void succeed(CacheCircuitBreaker breaker, int calls){
+        for (int i = 0; i < calls; i++) {
+            Assertions.assertTrue(breaker.tryAcquire());
+            breaker.onSuccess(0);
+        }
+    }
+
+    private static void waitOpenDuration() throws InterruptedException {
+        Thread.sleep(OPEN_DURATION.toMillis() + 10);
+    }
+
+    @Test
+    public void staysClosedBelowMinimumCalls(){
+        CacheCircuitBreaker breaker = breaker();
+        fail(breaker, 3);
+        Assertions.assertEquals(CacheCircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    public void opensOnFailureRate(){
+        CacheCircuitBreaker breaker = breaker();
+        succeed(breaker, 2);
+        fail(breaker, 2);
+        Assertions.assertEquals(CacheCircuitBreaker.State.OPEN, breaker.getState());
+        Assertions.assertFalse(breaker.tryAcquire());
+        Assertions.assertEquals(1L, breaker.getStats().get("breaker.rejected"));
+    }
+
+    @Test
+    public void opensOnSlowCallRate(){
+        CacheCircuitBreaker breaker = breaker();
+        for (int i = 0; i < 4; i++) {
+            Assertions.assertTrue(breaker.tryAcquire());
+            breaker.onSuccess(Duration.ofMillis(i < 2 ? 200 : 1).toNanos());
+        }
+        Assertions.assertEquals(CacheCircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    @Test
+    public void closesAfterSuccessfulTrialCalls() throws InterruptedException {
+        CacheCircuitBreaker breaker = breaker();
+        fail(breaker, 4);
+        waitOpenDuration();
+
+        Assertions.assertTrue(breaker.tryAcquire());
+        Assertions.assertEquals(CacheCircuitBreaker.State.HALF_OPEN, breaker.getState());
+        Assertions.assertTrue(breaker.tryAcquire());
+        // Only halfOpenCalls trial calls
+        Assertions.assertFalse(breaker.tryAcquire());
+
+        breaker.onSuccess(0);
+        breaker.onSuccess(0);
+        Assertions.assertEquals(CacheCircuitBreaker.State.CLOSED, breaker.getState());
+        // The window starts over: 3 failures are below minimumCalls again
+        fail(breaker, 3);
+        Assertions.assertEquals(CacheCircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    public void reopensOnFailedTrialCall() throws InterruptedException {
+        CacheCircuitBreaker breaker = breaker();
+        fail(breaker, 4);
+        waitOpenDuration();
+
+        Assertions.assertTrue(breaker.tryAcquire());
+        breaker.onError();
+        Assertions.assertEquals(CacheCircuitBreaker.State.OPEN, breaker.getState());
+        Assertions.assertFalse(breaker.tryAcquire());
+        Assertions.assertEquals(2L, breaker.getStats().get("breaker.opened"));
+    }
+
+    @Test
+    public void cancelledTrialCallGivesItsPermitBack() throws InterruptedException {
+        CacheCircuitBreaker breaker = breaker();
+        fail(breaker, 4);
+        waitOpenDuration();
+
+        Assertions.assertTrue(breaker.tryAcquire());
+        Assertions.assertTrue(breaker.tryAcquire());
+        breaker.onCancel();
+        Assertions.assertTrue(breaker.tryAcquire());
+    }
+
+    @Test
+    public void callFallsBackWhileOpen(){
+        CacheCircuitBreaker breaker = breaker();
+        fail(breaker, 4);
+
+        StepVerifier.create(breaker.call(() -> Mono.just("cache"), () -> Mono.just("fallback")))
+                .expectNext("fallback")
+                .verifyComplete();
+    }
+
+    @Test
+    public void callTimeoutCountsAsFailure(){
+        CacheCircuitBreaker breaker = breaker();
+
+        StepVerifier.create(breaker.call(Mono::<String>never, () -> Mono.just("fallback")))
+                .expectNext("fallback")
+                .verifyComplete();
+        Assertions.assertEquals(1L, breaker.getStats().get("breaker.failed"));
+    }
+
+}
@@ -0,0 +1,154 @@
+package com.example.templates;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+public class CacheTemplateTest {
+
+    private static final Duration OPEN_DURATION = Duration.ofMillis(50);
+
+    // Source and cache in maps, the cache fails while down
+    private static class MapCacheTemplate extends CacheTemplate<Integer, String> {
+
+        private final Map<Integer, String> source = new ConcurrentHashMap<>();
+        private final Map<Integer, String> cache = new ConcurrentHashMap<>();
+        private volatile boolean down;
+
+        private <T> Mono<T> cacheOp(Supplier<T> call){
+            return Mono.defer(() -> this.down ?
+                    Mono.error(new IllegalStateException("cache down")) :
+                    Mono.justOrEmpty(call.get()));
+        }
+
+        @Override
+        protected Mono<String> insertSource(String entity) {
+            return Mono.just(entity);
+        }
+
+        @Override
+        protected Mono<String> insertCache(String entity) {
+            return Mono.just(entity);
+        }
+
+        @Override
+        protected Mono<String> getFromSource(Integer key) {
+            return Mono.justOrEmpty(this.source.get(key));
+        }
+
+        @Override
+        protected Mono<String> getFromCache(Integer key) {
+            return cacheOp(() -> this.cache.get(key));
+        }
+
+        @Override
+        protected Mono<String> updateSource(Integer key, String entity) {
+            this.source.put(key, entity);
+            return Mono.just(entity);
+        }
+
+        @Override
+        protected Mono<String> updateCache(Integer key, String entity) {
+            return cacheOp(() -> {
+                this.cache.put(key, entity);
+                return entity;
+            });
+        }
+
+        @Override
+        protected Mono<Boolean> deleteFromSource(Integer key) {
+            return Mono.just(this.source.remove(key) != null);
+        }
+
+        @Override
+        protected Mono<Boolean> deleteFromCache(Integer key) {
+            return cacheOp(() -> this.cache.remove(key) != null);
+        }
+    }
+
+    // Opens after 4 failed calls
+    private static CacheCircuitBreaker breaker(){
+        return new CacheCircuitBreaker("test", 10, 4, 50, 50,
+                Duration.ofMillis(100), Duration.ofMillis(50), OPEN_DURATION, 2);
+    }
+
+    private static void open(MapCacheTemplate template, CacheCircuitBreaker breaker){
+        template.down = true;
+        for (int i = 0; i < 4; i++) {
+            template.get(0).block();
+        }
+        Assertions.assertEquals(CacheCircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    @Test
+    public void updateWhileOpenIsNotServedStaleAfterRecovery() throws InterruptedException {
+        MapCacheTemplate template = new MapCacheTemplate();
+        CacheCircuitBreaker breaker = breaker();
+        template.setCircuitBreaker(breaker);
+        template.update(1, "v1").block();
+        Assertions.assertEquals("v1", template.cache.get(1));
+
+        open(template, breaker);
+        template.down = false;
+        // Skipped by the breaker, the cache still holds v1
+        StepVerifier.create(template.update(1, "v2"))
+                .expectNext("v2")
+                .verifyComplete();
+        Assertions.assertEquals("v1", template.cache.get(1));
+        Assertions.assertEquals(1, template.getStats().get("invalidations.pending"));
+
+        Thread.sleep(OPEN_DURATION.toMillis() + 10);
+        StepVerifier.create(template.get(1))
+                .expectNext("v2")
+                .verifyComplete();
+        Assertions.assertEquals(0, template.getStats().get("invalidations.pending"));
+        Assertions.assertEquals(1L, template.getStats().get("writes.skipped"));
+    }
+
+    @Test
+    public void failedInvalidationStaysPending() throws InterruptedException {
+        MapCacheTemplate template = new MapCacheTemplate();
+        CacheCircuitBreaker breaker = breaker();
+        template.setCircuitBreaker(breaker);
+        template.update(1, "v1").block();
+
+        open(template, breaker);
+        template.update(1, "v2").block();
+
+        // The trial call fails, the breaker opens again and the key is kept
+        Thread.sleep(OPEN_DURATION.toMillis() + 10);
+        StepVerifier.create(template.get(1))
+                .expectNext("v2")
+                .verifyComplete();
+        Assertions.assertEquals(1, template.getStats().get("invalidations.pending"));
+
+        template.down = false;
+        Thread.sleep(OPEN_DURATION.toMillis() + 10);
+        StepVerifier.create(template.get(1))
+                .expectNext("v2")
+                .verifyComplete();
+        Assertions.assertEquals(0, template.getStats().get("invalidations.pending"));
+    }
+
+    @Test
+    public void failedWriteWithoutBreakerIsInvalidatedOnTheNextCall(){
+        MapCacheTemplate template = new MapCacheTemplate();
+        template.update(1, "v1").block();
+
+        template.down = true;
+        template.update(1, "v2").block();
+        template.down = false;
+
+        StepVerifier.create(template.get(1))
+                .expectNext("v2")
+                .verifyComplete();
+        Assertions.assertEquals("v2", template.cache.get(1));
+    }
+
+}
@@ -0,0 +1,80 @@
+package com.example.instrumentation;
+
+import com.example.templates.CacheTemplate;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.binder.cache.CacheMeterBinder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publishes the counters of a CacheTemplate:
+ *  - cache.gets{result=hit|miss} and cache.puts (source loads written back), the standard Micrometer cache meters.
+ *    Negative (tombstone) hits count as hits: the source was not queried.
+ *  - cache.load, time spent in getFromSource per load.
+ *  - cache.stats{stat=...}, one gauge per getStats() entry (single-flight, near cache, breaker, hedging, ...),
+ *    so every feature that adds a counter shows up without touching this class.
+ */
+public class CacheTemplateMetrics extends CacheMeterBinder<CacheTemplate<?, ?>> {
+
+    public CacheTemplateMetrics(CacheTemplate<?, ?> cache, String cacheName, Iterable<Tag> tags) {
+        super(cache, cacheName, tags);
+    }
+
+    @Override
+    protected Long size() {
+        // Lives in Redis, counting would be a round trip per scrape
+        return null;
+    }
+
+    @Override
+    protected long hitCount() {
+        CacheTemplate<?, ?> cache = getCache();
+        return cache == null ? 0 : cache.getHits() + cache.getNegativeHits();
+    }
+
+    @Override
+    protected Long missCount() {
+        CacheTemplate<?, ?> cache = getCache();
+        return cache == null ? null : cache.getMisses();
+    }
+
+    @Override
+    protected Long evictionCount() {
+        return null;
+    }
+
+    @Override
+    protected long putCount() {
+        CacheTemplate<?, ?> cache = getCache();
+        return cache == null ? 0 : cache.getLoads();
+    }
+
+    @Override
+    protected void bindImplementationSpecificMetrics(MeterRegistry registry) {
+        CacheTemplate<?, ?> cache = getCache();
+        if (cache == null) {
+            return;
+        }
+        FunctionTimer.builder("cache.load", cache,
+                        CacheTemplate::getLoads, CacheTemplate::getLoadNanos, TimeUnit.NANOSECONDS)
+                .tags(getTagsWithCacheName())
+                .description("Loads from the source on cache miss or refresh")
+                .register(registry);
+
+        // The keys are fixed once the template is configured
+        cache.getStats().keySet().forEach(stat ->
+                Gauge.builder("cache.stats", cache, c -> value(c, stat))
+                        .tags(getTagsWithCacheName())
+                        .tag("stat", stat)
+                        .register(registry));
+    }
+
+    private static double value(CacheTemplate<?, ?> cache, String stat){
+        Number value = cache.getStats().get(stat);
+        return value == null ? Double.NaN : value.doubleValue();
+    }
+
+}
@@ -0,0 +1,96 @@
+package com.example.instrumentation;
+
+import com.example.aop.LatencyRecorder;
+import com.example.templates.CacheTemplate;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.r2dbc.spi.ConnectionFactory;
+import org.redisson.api.RedissonClient;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.ListableBeanFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Metrics for the apps built on common, picked up by adding the instrumentation dependency
+ * (registered in META-INF/spring/...AutoConfiguration.imports, no @Import or scanning needed).
+ * Scraped on /actuator/prometheus, exposed by default through InstrumentationEnvironmentPostProcessor.
+ *
+ *  - cache.*: every CacheTemplate bean, tagged with its bean name
+ *  - timing: every @Timing method, when the TimingAspect (and so the LatencyRecorder) is imported
+ *  - redisson.pool.connections: every RedissonClient bean, only if Redisson is on the classpath
+ *  - r2dbc.pool.acquire: every ConnectionFactory bean, only if R2DBC is on the classpath
+ *
+ * Each binder looks its beans up in bindTo(), which Spring Boot calls once all singletons exist,
+ * so the apps' own bean wiring is never forced early.
+ */
+@AutoConfiguration
+public class InstrumentationAutoConfiguration {
+
+    @Bean
+    public MeterBinder cacheTemplateMetrics(ListableBeanFactory beanFactory){
+        return registry -> distinct(beanFactory.getBeansOfType(CacheTemplate.class))
+                .forEach((name, cache) -> new CacheTemplateMetrics(cache, name, Tags.empty()).bindTo(registry));
+    }
+
+    @Bean
+    public MeterBinder timingMetrics(ObjectProvider<LatencyRecorder> latencyRecorder){
+        return registry -> latencyRecorder.ifAvailable(recorder -> new TimingMetrics(recorder).bindTo(registry));
+    }
+
+    // A decorator bean may return the bean it wraps (e.g. @Primary productCache without a near cache), bind each instance once
+    private static <T> Map<String, T> distinct(Map<String, T> beans){
+        Set<Object> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        Map<String, T> distinct = new LinkedHashMap<>();
+        beans.forEach((name, bean) -> {
+            if (seen.add(bean)) {
+                distinct.put(name, bean);
+            }
+        });
+        return distinct;
+    }
+
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnClass(name = "org.redisson.api.RedissonClient")
+    static class RedissonInstrumentation {
+
+        @Bean
+        public MeterBinder redissonPoolMetrics(ListableBeanFactory beanFactory){
+            return registry -> distinct(beanFactory.getBeansOfType(RedissonClient.class))
+                    .forEach((name, client) -> new RedissonPoolMetrics(client, name).bindTo(registry));
+        }
+
+    }
+
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnClass(name = "io.r2dbc.spi.ConnectionFactory")
+    static class R2dbcInstrumentation {
+
+        // Static: a BeanPostProcessor must not pull its configuration class (and its dependencies) in early
+        @Bean
+        public static BeanPostProcessor timedConnectionFactoryPostProcessor(ObjectProvider<MeterRegistry> registry){
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) throws BeansException {
+                    if (bean instanceof ConnectionFactory factory && !(bean instanceof TimedConnectionFactory)) {
+                        return new TimedConnectionFactory(factory, beanName, registry);
+                    }
+                    return bean;
+                }
+            };
+        }
+
+    }
+
+}
@@ -0,0 +1,24 @@
+package com.example.instrumentation;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.env.EnvironmentPostProcessor;
+import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.core.env.MapPropertySource;
+
+import java.util.Map;
+
+/**
+ * Exposes the Prometheus scrape endpoint without any change to the apps' application.yml.
+ * Added last, so any management.* property set by the app still wins.
+ */
+public class InstrumentationEnvironmentPostProcessor implements EnvironmentPostProcessor {
+
+    @Override
+    public void postProcessEnvironment(ConfigurableEnvironment environment, SpringApplication application) {
+        environment.getPropertySources().addLast(new MapPropertySource("instrumentationDefaults", Map.of(
+                "management.endpoints.web.exposure.include", "health,prometheus",
+                "management.metrics.tags.application", "${spring.application.name:unknown}"
+        )));
+    }
+
+}
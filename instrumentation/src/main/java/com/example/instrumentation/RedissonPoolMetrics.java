@@ -0,0 +1,87 @@
+package com.example.instrumentation;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RedissonClient;
+
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.function.ToIntFunction;
+
+/**
+ * Connection pool usage of a RedissonClient, summed over all nodes:
+ *  - redisson.pool.connections{state=total}, connections currently open
+ *  - redisson.pool.connections{state=free}, permits left in the pool (pool size minus borrowed)
+ *  - redisson.pool.connections{state=active}, connections borrowed by in-flight commands
+ *
+ * Redisson has no public API for this, the counters are read from its connection manager by reflection
+ * (Redisson -> CommandAsyncExecutor -> ConnectionManager -> MasterSlaveEntry -> ClientConnectionsEntry).
+ * If the internals change between versions, the gauges report NaN instead of failing the app.
+ */
+@Slf4j
+public class RedissonPoolMetrics implements MeterBinder {
+
+    private final RedissonClient client;
+    private final String name;
+
+    public RedissonPoolMetrics(RedissonClient client, String name) {
+        this.client = client;
+        this.name = name;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        gauge(registry, "total", holder -> ((Collection<?>) invoke(holder, "getAllConnections")).size());
+        gauge(registry, "free", holder -> ((Number) invoke(invoke(holder, "getFreeConnectionsCounter"), "getCounter")).intValue());
+        gauge(registry, "active", holder -> ((Collection<?>) invoke(holder, "getAllConnections")).size()
+                - ((Number) invoke(invoke(holder, "getFreeConnectionsCounter"), "getCounter")).intValue());
+    }
+
+    private void gauge(MeterRegistry registry, String state, ToIntFunction<Object> perEntry){
+        Gauge.builder("redisson.pool.connections", this, metrics -> metrics.sum(perEntry))
+                .description("Redisson command connection pool")
+                .tag("client", this.name)
+                .tag("state", state)
+                .register(registry);
+    }
+
+    private double sum(ToIntFunction<Object> perEntry){
+        try {
+            Object connectionManager = invoke(invoke(this.client, "getCommandExecutor"), "getConnectionManager");
+            int sum = 0;
+            for (Object masterSlaveEntry : (Collection<?>) invoke(connectionManager, "getEntrySet")) {
+                for (Object clientEntry : (Collection<?>) invoke(masterSlaveEntry, "getAllEntries")) {
+                    sum += perEntry.applyAsInt(invoke(clientEntry, "getConnectionsHolder"));
+                }
+            }
+            return sum;
+        } catch (RuntimeException e) {
+            log.debug("RedissonPoolMetrics - pool counters unavailable: {}", e.toString());
+            return Double.NaN;
+        }
+    }
+
+    private static Object invoke(Object target, String method){
+        try {
+            Method m = findMethod(target.getClass(), method);
+            m.setAccessible(true);
+            return m.invoke(target);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(method + " on " + target.getClass().getName(), e);
+        }
+    }
+
+    private static Method findMethod(Class<?> type, String method) throws NoSuchMethodException {
+        for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+            try {
+                return c.getDeclaredMethod(method);
+            } catch (NoSuchMethodException ignored) {
+                // keep walking up
+            }
+        }
+        return type.getMethod(method);
+    }
+
+}
@@ -0,0 +1,80 @@
+package com.example.instrumentation;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.r2dbc.spi.Closeable;
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.ConnectionFactoryMetadata;
+import io.r2dbc.spi.Wrapped;
+import org.reactivestreams.Publisher;
+import org.springframework.beans.factory.ObjectProvider;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times ConnectionFactory.create(), which for the r2dbc-pool ConnectionPool is the time a query waits
+ * for a free connection: r2dbc.pool.acquire{name, outcome=success|error|cancel}.
+ *
+ *  - Implements Wrapped, so Spring Boot's own pool gauges (r2dbc.pool.acquired/idle/pending)
+ *    still find the ConnectionPool underneath.
+ *  - Close is forwarded, so the pool is still shut down with the context.
+ *  - The registry is looked up on first use, the factory is created before the metrics infrastructure.
+ */
+public class TimedConnectionFactory implements ConnectionFactory, Wrapped<ConnectionFactory>, Closeable {
+
+    private final ConnectionFactory delegate;
+    private final String name;
+    private final ObjectProvider<MeterRegistry> registry;
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+
+    public TimedConnectionFactory(ConnectionFactory delegate, String name, ObjectProvider<MeterRegistry> registry) {
+        this.delegate = delegate;
+        this.name = name;
+        this.registry = registry;
+    }
+
+    @Override
+    public Publisher<? extends Connection> create() {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return Mono.<Connection>from(this.delegate.create())
+                    .doOnSuccess(connection -> record("success", start))
+                    .doOnError(e -> record("error", start))
+                    .doOnCancel(() -> record("cancel", start));
+        });
+    }
+
+    private void record(String outcome, long start){
+        MeterRegistry meterRegistry = this.registry.getIfAvailable();
+        if (meterRegistry == null) {
+            return;
+        }
+        this.timers.computeIfAbsent(outcome, o -> Timer.builder("r2dbc.pool.acquire")
+                        .description("Time to obtain a connection from the R2DBC connection factory")
+                        .tag("name", this.name)
+                        .tag("outcome", o)
+                        .publishPercentileHistogram()
+                        .register(meterRegistry))
+                .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public ConnectionFactoryMetadata getMetadata() {
+        return this.delegate.getMetadata();
+    }
+
+    @Override
+    public ConnectionFactory unwrap() {
+        return this.delegate;
+    }
+
+    @Override
+    public Publisher<Void> close() {
+        return this.delegate instanceof Closeable closeable ? closeable.close() : Mono.empty();
+    }
+
+}
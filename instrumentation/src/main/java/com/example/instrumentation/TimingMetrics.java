@@ -0,0 +1,49 @@
+package com.example.instrumentation;
+
+import com.example.aop.LatencyListener;
+import com.example.aop.LatencyRecorder;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mirrors every @Timing measurement into a timing{class,method} timer with a percentile histogram,
+ * so Prometheus can aggregate quantiles across instances (the HdrHistogram report in LatencyRecorder is per node).
+ */
+public class TimingMetrics implements MeterBinder, LatencyListener {
+
+    private final LatencyRecorder latencyRecorder;
+    private final Map<Method, Timer> timers = new ConcurrentHashMap<>();
+    private volatile MeterRegistry registry;
+
+    public TimingMetrics(LatencyRecorder latencyRecorder) {
+        this.latencyRecorder = latencyRecorder;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        this.registry = registry;
+        this.latencyRecorder.addListener(this);
+    }
+
+    @Override
+    public void onLatency(Method method, long nanos) {
+        this.timers.computeIfAbsent(method, this::timer)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    private Timer timer(Method method){
+        return Timer.builder("timing")
+                .description("Latency of @Timing methods")
+                .tag("class", method.getDeclaringClass().getSimpleName())
+                .tag("method", method.getName())
+                .publishPercentileHistogram()
+                .register(this.registry);
+    }
+
+}
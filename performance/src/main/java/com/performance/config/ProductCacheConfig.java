@@ -0,0 +1,143 @@
+package com.performance.config;
+
+import com.example.templates.AdmissionPolicy;
+import com.example.templates.CacheCircuitBreaker;
+import com.example.templates.CacheTemplate;
+import com.example.templates.HedgePolicy;
+import com.example.templates.HotKeyReplica;
+import com.example.templates.NearCacheTemplate;
+import com.example.templates.WriteBehindEntry;
+import com.example.templates.WriteBehindQueue;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.performance.model.Product;
+import com.performance.repository.ProductRepository;
+import com.performance.util.ProductCacheTemplate;
+import com.performance.util.ProductHashCacheTemplate;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.redisson.api.RedissonReactiveClient;
+import org.redisson.codec.TypedJsonJacksonCodec;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+
+@Configuration
+public class ProductCacheConfig {
+
+    // Redis base layer with the map layout (default)
+    @Bean
+    @ConditionalOnProperty(name = "product.cache.layout", havingValue = "map", matchIfMissing = true)
+    public ProductCacheTemplate productCacheTemplate(ProductRepository repository,
+                                                     R2dbcEntityTemplate entityTemplate,
+                                                     RedissonReactiveClient client,
+                                                     ProductCacheProperties properties){
+        return new ProductCacheTemplate(repository, entityTemplate, client, properties);
+    }
+
+    // Redis base layer with the hash layout, one hash per product
+    @Bean
+    @ConditionalOnProperty(name = "product.cache.layout", havingValue = "hash")
+    public ProductCacheTemplate productHashCacheTemplate(ProductRepository repository,
+                                                         R2dbcEntityTemplate entityTemplate,
+                                                         RedissonReactiveClient client,
+                                                         ProductCacheProperties properties){
+        return new ProductHashCacheTemplate(repository, entityTemplate, client, properties);
+    }
+
+    /**
+     * The CacheTemplate used by ProductServiceWithCache.
+     * ProductCacheTemplate (or ProductHashCacheTemplate with the hash layout) is the base layer,
+     * optional layers are wrapped around it
+     * based on ProductCacheProperties.
+     */
+    @Bean
+    @Primary
+    public CacheTemplate<Integer, Product> productCache(ProductCacheTemplate redisCache,
+                                                        RedissonReactiveClient client,
+                                                        ProductCacheProperties properties,
+                                                        ObjectProvider<WriteBehindQueue<Integer, Product>> writeBehind){
+        CacheTemplate<Integer, Product> cache = redisCache;
+
+        ProductCacheProperties.NearCache nearCache = properties.getNearCache();
+        if (nearCache.isEnabled()) {
+            cache = new NearCacheTemplate<>(cache, Product::getId, Integer.class, client, nearCache.getTopic(),
+                    nearCache.getMaximumSize(), nearCache.getTtl());
+        }
+
+        if (properties.getHardTtl() != null) {
+            cache.setExpiration(properties.getSoftTtl(), properties.getHardTtl(),
+                    properties.getEarlyRefreshBeta());
+        }
+
+        writeBehind.ifAvailable(cache::setWriteBehind);
+
+        ProductCacheProperties.CircuitBreaker breaker = properties.getCircuitBreaker();
+        if (breaker.isEnabled()) {
+            cache.setCircuitBreaker(new CacheCircuitBreaker("product",
+                    breaker.getWindowSize(), breaker.getMinimumCalls(),
+                    breaker.getFailureRateThreshold(), breaker.getSlowCallRateThreshold(),
+                    breaker.getSlowCallDuration(), breaker.getCallTimeout(),
+                    breaker.getOpenDuration(), breaker.getHalfOpenCalls()));
+        }
+
+        ProductCacheProperties.Hedge hedge = properties.getHedge();
+        if (hedge.isEnabled()) {
+            cache.setHedgePolicy(new HedgePolicy(hedge.getMinBudget(),
+                    hedge.getPercentile(), hedge.getMaxRatio()));
+        }
+
+        ProductCacheProperties.Admission admission = properties.getAdmission();
+        if (admission.isEnabled()) {
+            cache.setAdmissionPolicy(new AdmissionPolicy(admission.getThreshold(),
+                    admission.getWidth(), admission.getDepth(), admission.getSampleSize()));
+        }
+
+        return cache.setNegativeTtl(properties.getNegativeTtl())
+                .setSingleFlight(properties.isSingleFlight());
+    }
+
+    // Closed by Spring on shutdown (topic listener and aging timer)
+    @Bean
+    @ConditionalOnProperty(name = "product.cache.hot-keys.enabled", havingValue = "true")
+    public HotKeyReplica<Integer, Product> productHotKeys(RedissonReactiveClient client,
+                                                         ProductCacheProperties properties){
+        ProductCacheProperties.HotKeys hotKeys = properties.getHotKeys();
+        return new HotKeyReplica<>(client, Integer.class, hotKeys.getTopic(), hotKeys.getSampleRate(), hotKeys.getThreshold(),
+                hotKeys.getMaximumKeys(), hotKeys.getWindow(), hotKeys.getTtl());
+    }
+
+    // cache.hotkeys.* meters, tagged like the CacheTemplate metrics
+    @Bean
+    @ConditionalOnProperty(name = "product.cache.hot-keys.enabled", havingValue = "true")
+    public MeterBinder productHotKeyMetrics(HotKeyReplica<Integer, Product> hotKeys){
+        return registry -> {
+            Gauge.builder("cache.hotkeys.hot", hotKeys, r -> r.getStats().get("hotkeys.hot").doubleValue())
+                    .tag("cache", "product")
+                    .register(registry);
+            for (String name : new String[]{"promotions", "demotions", "replica.hits", "invalidations"}) {
+                FunctionCounter.builder("cache.hotkeys." + name, hotKeys, r -> r.getStats().get("hotkeys." + name).doubleValue())
+                        .tag("cache", "product")
+                        .register(registry);
+            }
+        };
+    }
+
+    // Closed by Spring on shutdown, pending entries are replayed on the next start
+    @Bean
+    @ConditionalOnProperty(name = "product.cache.write-behind.enabled", havingValue = "true")
+    public WriteBehindQueue<Integer, Product> productWriteBehindQueue(RedissonReactiveClient client,
+                                                                      ProductCacheProperties properties){
+        ProductCacheProperties.WriteBehind writeBehind = properties.getWriteBehind();
+        return new WriteBehindQueue<>(client, writeBehind.getStream(),
+                new TypedJsonJacksonCodec(new TypeReference<String>() {},
+                        new TypeReference<WriteBehindEntry<Integer, Product>>() {}),
+                writeBehind.getFlushSize(), writeBehind.getFlushInterval(),
+                writeBehind.getMaxQueueSize(), writeBehind.getBackPressureTimeout(),
+                writeBehind.getMaxDeliveries());
+    }
+
+}
@@ -0,0 +1,191 @@
+package com.performance.config;
+
+import com.performance.util.ProductCacheCodec;
+import com.performance.util.ProductEntryStore;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Tuning knobs for the product cache (ProductCacheTemplate),
+ * bound from the `product.cache` section in application.yml.
+ */
+@Component
+@ConfigurationProperties(prefix = "product.cache")
+@Data
+public class ProductCacheProperties {
+
+    // Coalesce concurrent misses for the same product into one source load
+    private boolean singleFlight = false;
+
+    /**
+     * Expiration of the cached products, disabled when hardTtl is not set.
+     *  - softTtl: serve the cached value and refresh in the background after it (defaults to hardTtl).
+     *  - hardTtl: Redis drops the entry after it.
+     *  - earlyRefreshBeta: XFetch probabilistic early refresh factor, 0 disables it.
+     */
+    private Duration softTtl;
+    private Duration hardTtl;
+    private double earlyRefreshBeta = 1.0;
+
+    // TTL of the "not found" tombstones, negative caching is disabled when not set
+    private Duration negativeTtl;
+
+    // Most ids of one bulk read (GET /product/v2?ids=...), larger requests are rejected with 400
+    private int maxBatchIds = 500;
+
+    /**
+     * Redis layout of the cached products:
+     *  - MAP:  one `product` hash, a field per product holding the encoded entry (see ProductCacheTemplate).
+     *  - HASH: one hash per product, a field per attribute, partial updates and reads (see ProductHashCacheTemplate).
+     */
+    private Layout layout = Layout.MAP;
+
+    // Storage format of the cached products with the MAP layout, each codec has its own hash (see ProductCacheCodec)
+    private ProductCacheCodec codec = ProductCacheCodec.JSON;
+
+    private NearCache nearCache = new NearCache();
+
+    private WriteBehind writeBehind = new WriteBehind();
+
+    private CircuitBreaker circuitBreaker = new CircuitBreaker();
+
+    private Hedge hedge = new Hedge();
+
+    private Warmup warmup = new Warmup();
+
+    private Batching batching = new Batching();
+
+    private Sharding sharding = new Sharding();
+
+    private HotKeys hotKeys = new HotKeys();
+
+    private Admission admission = new Admission();
+
+    public enum Layout {
+        MAP,
+        HASH
+    }
+
+    // In-process L1 in front of the Redis `product` hash (see NearCacheTemplate)
+    @Data
+    public static class NearCache {
+        private boolean enabled = false;
+        private long maximumSize = 10_000;
+        private Duration ttl = Duration.ofSeconds(30);
+        private String topic = "product:invalidation";
+    }
+
+    // Queue product updates in a Redis stream and persist them in batches (see WriteBehindQueue)
+    @Data
+    public static class WriteBehind {
+        private boolean enabled = false;
+        private String stream = "product:write-behind";
+        private int flushSize = 500;
+        private Duration flushInterval = Duration.ofSeconds(1);
+        private long maxQueueSize = 100_000;
+        private Duration backPressureTimeout = Duration.ofSeconds(5);
+        // Deliveries of a failing entry before it is moved to the dead-letter stream
+        private int maxDeliveries = 5;
+    }
+
+    // Bypass Redis while it is degraded (see CacheCircuitBreaker)
+    @Data
+    public static class CircuitBreaker {
+        private boolean enabled = false;
+        private int windowSize = 100;
+        private int minimumCalls = 20;
+        private double failureRateThreshold = 50; // %
+        private double slowCallRateThreshold = 80; // %
+        private Duration slowCallDuration = Duration.ofMillis(50);
+        private Duration callTimeout = Duration.ofMillis(250);
+        private Duration openDuration = Duration.ofSeconds(5);
+        private int halfOpenCalls = 5;
+    }
+
+    // Read Postgres too when Redis is slower than the budget (see HedgePolicy)
+    @Data
+    public static class Hedge {
+        private boolean enabled = false;
+        private Duration minBudget = Duration.ofMillis(10);
+        private double percentile = 95; // 0 uses min-budget as a fixed budget
+        private double maxRatio = 0.05; // share of requests allowed to hedge
+    }
+
+    /**
+     * Startup (and on demand) warm-up from the most visited products of the last days (see CacheWarmupService).
+     * Coverage: visits of the warmed products / visits of the maxProducts most visited ones.
+     */
+    @Data
+    public static class Warmup {
+        private boolean enabled = true;
+        // Daily visit sets read, today included
+        private int days = 2;
+        private int maxProducts = 10_000;
+        private int chunkSize = 500;
+        // Chunks in flight
+        private int concurrency = 4;
+        // Readiness is held until the target coverage or the time budget is reached
+        private double targetCoverage = 0.95;
+        private Duration timeBudget = Duration.ofSeconds(30);
+    }
+
+    /**
+     * Request collapsing under ProductCacheTemplate (see BatchLoader): single-key cache reads within the window
+     * are sent as one HMGET, single-key source loads as one findAllById.
+     */
+    @Data
+    public static class Batching {
+        private boolean enabled = false;
+        private Duration window = Duration.ofNanos(200_000);
+        private int maxBatchSize = 64;
+    }
+
+    /**
+     * Redis keys of the MAP layout (see ProductEntryStore): SINGLE hash, SHARDED hashes or one key per ENTRY.
+     * migrateFrom: the previous key layout, read on misses and moved to the current one (online migration),
+     * unset it once the old keys are gone.
+     */
+    @Data
+    public static class Sharding {
+        private ProductEntryStore.KeyLayout keyLayout = ProductEntryStore.KeyLayout.SINGLE;
+        private int shardCount = 16;
+        private ProductEntryStore.KeyLayout migrateFrom;
+        private int migrateFromShardCount = 16;
+    }
+
+    /**
+     * Hot-key detection in ProductServiceWithCache (see HotKeyReplica): keys read more than threshold times
+     * per second on this node are served from a short-TTL in-process replica, invalidated through a Redis topic.
+     */
+    @Data
+    public static class HotKeys {
+        private boolean enabled = false;
+        // Share of the reads counted in the frequency sketch
+        private double sampleRate = 0.01;
+        // Reads per second (on this node) that promote a key, demoted below half of it
+        private double threshold = 1000;
+        private int maximumKeys = 100;
+        private Duration window = Duration.ofSeconds(1);
+        private Duration ttl = Duration.ofSeconds(1);
+        private String topic = "product:hot-key:invalidation";
+    }
+
+    /**
+     * TinyLFU-style admission of the loaded misses (see AdmissionPolicy): a miss is written to Redis
+     * only once the product has been read `threshold` times recently, one-off reads do not evict hot entries.
+     */
+    @Data
+    public static class Admission {
+        private boolean enabled = false;
+        private int threshold = 2;
+        // Frequency sketch: counters per row and rows
+        private int width = 65_536;
+        private int depth = 4;
+        // Reads between two agings of the sketch, 0 = 10 x width
+        private long sampleSize = 0;
+    }
+
+}
@@ -0,0 +1,39 @@
+package com.performance.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Startup data load (DataSetupService),
+ * bound from the `product.data` section in application.yml.
+ */
+@Component
+@ConfigurationProperties(prefix = "product.data")
+@Data
+public class ProductDataProperties {
+
+    // Products generated when no import file is set
+    private int rows = 1000;
+
+    // CSV of "description,price" lines (header and # lines skipped), e.g. file:/data/products.csv
+    private Resource importFile;
+
+    // Rows per INSERT statement
+    private int chunkSize = 5000;
+
+    // INSERT statements in flight
+    private int concurrency = 4;
+
+    // Load every product through the product cache once the table is loaded
+    private boolean prefillCache = false;
+
+    private int prefillChunkSize = 500;
+
+    // Startup fails when the load (and pre-fill) takes longer
+    private Duration timeout = Duration.ofMinutes(10);
+
+}
@@ -0,0 +1,105 @@
+package com.performance.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Set;
+
+/**
+ * Product visit counting (ProductVisitService),
+ * bound from the `product.visit` section in application.yml.
+ */
+@Component
+@ConfigurationProperties(prefix = "product.visit")
+@Data
+public class ProductVisitProperties {
+
+    // One addScore batch per window
+    private Duration flushInterval = Duration.ofSeconds(10);
+
+    // Counter stripes, 0 = twice the number of cores
+    private int stripes = 0;
+
+    // Distinct products counted per window, visits of further products are dropped (and reported)
+    private int maxProducts = 65_536;
+
+    private Buckets buckets = new Buckets();
+
+    private Durable durable = new Durable();
+
+    private Hot hot = new Hot();
+
+    private Visitors visitors = new Visitors();
+
+    /**
+     * Per-minute and per-hour visit sets next to the daily one, for the sliding window rankings (see VisitBuckets).
+     * Windows up to minuteRetention are built from minute buckets, longer ones (up to hourRetention) from hour buckets.
+     */
+    @Data
+    public static class Buckets {
+        private Duration minuteRetention = Duration.ofHours(2);
+        private Duration hourRetention = Duration.ofHours(48);
+        // How long the union of a window is reused before it is computed again
+        private Duration windowCacheTtl = Duration.ofSeconds(10);
+    }
+
+    /**
+     * Visits appended to a Redis stream every appendInterval (instead of addScore every flushInterval),
+     * aggregated into the sorted sets by all nodes through a consumer group (see VisitStream).
+     */
+    @Data
+    public static class Durable {
+        private boolean enabled = false;
+        private String stream = "product:visit:stream";
+        private String group = "visit-aggregators";
+        // Stable per node, so a restarted node replays its own pending entries; defaults to the host name
+        private String consumer;
+        private Duration appendInterval = Duration.ofSeconds(1);
+        private Duration aggregateInterval = Duration.ofSeconds(1);
+        private int batchSize = 100;
+        // Entries pending for longer (their node is gone) are claimed by another node
+        private Duration claimIdle = Duration.ofMinutes(1);
+    }
+
+    /**
+     * Node-local heavy hitters (Space-Saving summary fed by the flushed windows),
+     * published and merged across nodes into an approximate global top-K (see HotProductService).
+     */
+    @Data
+    public static class Hot {
+        private boolean enabled = true;
+        // Counters per node: products with more than 1/capacity of the (decayed) visits are always tracked
+        private int capacity = 256;
+        // Size of the merged global top-K
+        private int topK = 20;
+        private Duration publishInterval = Duration.ofSeconds(10);
+        // Counts are multiplied by this after each publish, so the top-K follows the current traffic
+        private double decay = 0.5;
+        // Hash holding one summary per node
+        private String key = "product:hot";
+        // Summaries not refreshed for this long (node gone) are ignored and removed
+        private Duration nodeExpiry = Duration.ofSeconds(60);
+        // Load the merged top-K through the product cache after each merge (near cache L1 and Redis)
+        private boolean prefetch = true;
+    }
+
+    /**
+     * Unique visitors per product and day, in HyperLogLogs (about 12 KB each, whatever the number of visitors),
+     * written by the visit flush (see VisitorBuffer).
+     */
+    @Data
+    public static class Visitors {
+        private boolean enabled = true;
+        // Client identifier set by a trusted proxy, the remote address is used otherwise
+        private String clientHeader = "X-Client-Id";
+        // Addresses of the proxies whose client header is trusted, any other client could pick its identity
+        private Set<String> trustedProxies = Set.of();
+        // Distinct (product, client) pairs per window, further ones are dropped (and reported)
+        private int maxPairs = 100_000;
+        // Daily HyperLogLogs and rankings are kept this long, the longest roll-up
+        private Duration retention = Duration.ofDays(30);
+    }
+
+}
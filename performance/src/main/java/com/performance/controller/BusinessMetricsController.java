@@ -1,14 +1,23 @@
 package com.performance.controller;
 
+import com.performance.model.HotProduct;
 import com.performance.service.BusinessMetricsService;
+import com.performance.service.HotProductService;
+import com.performance.service.ProductVisitService;
+import com.performance.util.VisitBuckets;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
-import java.time.Duration;
+import java.util.List;
 import java.util.Map;
 
 @RestController
@@ -18,13 +27,55 @@ public class BusinessMetricsController {
     @Autowired
     private BusinessMetricsService metricsService;
 
-    // Return top3Products as a stream
-    // Update values every 10 seconds
+    @Autowired
+    private ProductVisitService visitService;
+
+    @Autowired
+    private HotProductService hotProductService;
+
+    // Return the top products as a stream
+    // GET /product/metrics?window=5m&limit=10 (window: today, 5m, 1h, 24h ...)
+    // Checked every 10 seconds, pushed only when the ranking changed,
+    // one shared Redis poll for all the connected dashboards (see BusinessMetricsService.topProductsStream)
     @GetMapping(produces = MediaType.TEXT_EVENT_STREAM_VALUE)
-    public Flux<Map<Integer, Double>> getMetrics(){
-        return Flux.interval(Duration.ZERO, Duration.ofSeconds(10))
-                .flatMap(tick -> metricsService.top3Products())
-                .take(10); // limit number of stream return
+    public Flux<Map<Integer, Double>> getMetrics(@RequestParam(defaultValue = VisitBuckets.TODAY) String window,
+                                                 @RequestParam(defaultValue = "3") int limit){
+        return metricsService.topProductsStream(window, limit)
+                // Unknown or too long window
+                .onErrorMap(IllegalArgumentException.class,
+                        e -> new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e));
+    }
+
+    // Visit counting: flushed, late (carried over after a failed flush) and dropped visits
+    @GetMapping("/visits")
+    public Mono<Map<String, Number>> getVisitStats(){
+        return Mono.fromSupplier(this.visitService::getStats);
+    }
+
+    // Top products by unique visitors (HyperLogLog estimates)
+    // GET /product/metrics/visitors?days=1&limit=10 (days: 1 = today, up to the visitor retention)
+    @GetMapping("/visitors")
+    public Mono<Map<Integer, Long>> getTopUniqueVisitors(@RequestParam(defaultValue = "1") int days,
+                                                         @RequestParam(defaultValue = "10") int limit){
+        return metricsService.topUniqueVisitors(days, limit)
+                .onErrorMap(IllegalArgumentException.class,
+                        e -> new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e));
+    }
+
+    // Unique visitors of a product over the last N days
+    // GET /product/metrics/visitors/1?days=7
+    @GetMapping("/visitors/{id}")
+    public Mono<Long> getUniqueVisitors(@PathVariable int id, @RequestParam(defaultValue = "1") int days){
+        return metricsService.uniqueVisitors(id, days)
+                .onErrorMap(IllegalArgumentException.class,
+                        e -> new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e));
+    }
+
+    // Approximate cluster-wide top-K from the merged per-node heavy-hitter summaries,
+    // each visit count between lowerBound and estimate
+    @GetMapping("/hot")
+    public Mono<List<HotProduct>> getHotProducts(){
+        return Mono.fromSupplier(this.hotProductService::getHotProducts);
     }
 
 }
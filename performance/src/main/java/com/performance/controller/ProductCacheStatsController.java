@@ -0,0 +1,49 @@
+package com.performance.controller;
+
+import com.example.templates.CacheTemplate;
+import com.example.templates.HotKeyReplica;
+import com.performance.model.Product;
+import com.performance.service.CacheWarmupService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("product/cache")
+public class ProductCacheStatsController {
+
+    @Autowired
+    private CacheTemplate<Integer, Product> cacheTemplate;
+
+    @Autowired
+    private CacheWarmupService warmupService;
+
+    // Only with product.cache.hot-keys.enabled
+    @Autowired(required = false)
+    private HotKeyReplica<Integer, Product> hotKeys;
+
+    // Counters of the product cache: loads, hits per tier, hit ratios ...
+    @GetMapping("/stats")
+    public Mono<Map<String, Number>> getStats(){
+        return Mono.fromSupplier(() -> {
+            Map<String, Number> stats = this.cacheTemplate.getStats();
+            if (this.hotKeys != null) {
+                stats.putAll(this.hotKeys.getStats());
+            }
+            return stats;
+        });
+    }
+
+    // Warm the cache with the most visited products, e.g. on the new nodes before a deploy cutover
+    // Returns candidates, warmed, coverage, elapsedMs, complete
+    @PostMapping("/warmup")
+    public Mono<Map<String, Number>> warmup(){
+        return this.warmupService.warmup();
+    }
+
+}
@@ -1,18 +1,30 @@
 package com.performance.controller;
 
 import com.example.aop.Timing;
+import com.performance.config.ProductCacheProperties;
+import com.performance.config.ProductVisitProperties;
 import com.performance.model.Product;
 import com.performance.service.ProductServiceWithCache;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.reactive.ServerHttpRequest;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.net.InetSocketAddress;
+import java.util.List;
+
 @RestController
 @RequestMapping("product/v2")
 public class ProductControllerWithCache {
@@ -20,19 +32,77 @@ public class ProductControllerWithCache {
     @Autowired
     private ProductServiceWithCache service;
 
-//    @Timing
+    @Autowired
+    private ProductVisitProperties visitProperties;
+
+    @Autowired
+    private ProductCacheProperties cacheProperties;
+
+    // The client is counted in the product's unique visitors
+    @Timing
     @GetMapping("/{id}")
-    public Mono<Product> getProduct(@PathVariable int id){
-        return this.service.getProduct(id);
+    public Mono<Product> getProduct(@PathVariable int id, ServerHttpRequest request){
+        return this.service.getProduct(id, clientId(request));
+    }
+
+    // GET /product/v2?ids=1,2,3, at most product.cache.max-batch-ids ids
+    @Timing
+    @GetMapping
+    public Flux<Product> getProducts(@RequestParam List<Integer> ids, ServerHttpRequest request){
+        int max = this.cacheProperties.getMaxBatchIds();
+        if (ids.size() > max) {
+            return Flux.error(new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "At most " + max + " ids per request: " + ids.size()));
+        }
+        return this.service.getProducts(ids, clientId(request));
     }
 
-//    @Timing
+    @Timing
     @PutMapping("/update")
     public Mono<Product> updateProduct(@RequestBody Product product){
         return this.service.updateProduct(product);
     }
 
-//    @Timing
+    // GET /product/v2/1/price
+    @Timing
+    @GetMapping("/{id}/price")
+    public Mono<Double> getPrice(@PathVariable int id){
+        return this.service.getPrice(id);
+    }
+
+    // PATCH /product/v2/1/price?price=42.5
+    @Timing
+    @PatchMapping("/{id}/price")
+    public Mono<Boolean> updatePrice(@PathVariable int id, @RequestParam double price){
+        return this.service.updatePrice(id, price);
+    }
+
+    @Timing
+    @PostMapping("/insert")
+    public Mono<Product> insertProduct(@RequestBody Product product){
+        return this.service.insertProduct(product);
+    }
+
+    /**
+     * The remote address, or the client identifier header when the request comes from a trusted proxy
+     * (visitors.trusted-proxies): any other caller could inflate unique visitors by changing the header.
+     * Null when no address is known.
+     */
+    private String clientId(ServerHttpRequest request){
+        InetSocketAddress address = request.getRemoteAddress();
+        String remote = address == null ? null :
+                address.getAddress() != null ? address.getAddress().getHostAddress() : address.getHostString();
+        ProductVisitProperties.Visitors visitors = this.visitProperties.getVisitors();
+        if (remote != null && visitors.getTrustedProxies().contains(remote)) {
+            String clientId = request.getHeaders().getFirst(visitors.getClientHeader());
+            if (clientId != null && !clientId.isBlank()) {
+                return clientId;
+            }
+        }
+        return remote;
+    }
+
+    @Timing
     @DeleteMapping("/{id}")
     public Mono<Boolean> deleteProduct(@PathVariable int id){
         return this.service.deleteProduct(id);
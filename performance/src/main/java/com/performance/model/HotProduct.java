@@ -0,0 +1,22 @@
+package com.performance.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A product of the merged heavy-hitter top-K (HotProductService),
+ * its (decayed) visit count is between lowerBound and estimate.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class HotProduct {
+
+    private int productId;
+    // Upper bound: tracked counts, plus the smallest counter of the nodes not tracking the product
+    private long estimate;
+    // Guaranteed visits: tracked counts minus their errors
+    private long lowerBound;
+
+}
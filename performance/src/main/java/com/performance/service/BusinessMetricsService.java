@@ -1,40 +1,221 @@
 package com.performance.service;
 
+import com.performance.config.ProductVisitProperties;
+import com.performance.util.VisitBuckets;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.BatchOptions;
+import org.redisson.api.RBatchReactive;
+import org.redisson.api.RHyperLogLogReactive;
 import org.redisson.api.RScoredSortedSetReactive;
 import org.redisson.api.RedissonReactiveClient;
 import org.redisson.client.codec.IntegerCodec;
+import org.redisson.client.codec.StringCodec;
 import org.redisson.client.protocol.ScoredEntry;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.time.Duration;
 import java.time.LocalDate;
-import java.time.format.DateTimeFormatter;
+import java.time.LocalDateTime;
+import java.util.Comparator;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
 
 @Service
+@Slf4j
 public class BusinessMetricsService {
 
+    private static final Duration TICK = Duration.ofSeconds(10);
+    private static final int MAX_LIMIT = 100;
+
     @Autowired
     private RedissonReactiveClient client;
 
+    @Autowired
+    private VisitBuckets buckets;
+
+    @Autowired
+    private ProductVisitProperties properties;
+
+    // One shared ranking stream per (window, limit), see topProductsStream
+    private final Map<List<Object>, Flux<Map<Integer, Double>>> streams = new ConcurrentHashMap<>();
+
     // Get top 3 products by visit count for every day
-    // productID: visitCount
-    // {
-    //    189: 423
-    //    165: 324
-    //    213: 108
-    // }
     public Mono<Map<Integer, Double>> top3Products(){
-        String format = DateTimeFormatter.ofPattern("YYYYMMdd").format(LocalDate.now());
-        RScoredSortedSetReactive<Integer> set =
-                client.getScoredSortedSet("product:visit:" + format, IntegerCodec.INSTANCE);
+        return topProducts(VisitBuckets.TODAY, 3);
+    }
+
+    /**
+     * Top products by visit count over a sliding window (5m, 1h, 24h ...) or "today".
+     * productID: visitCount
+     * {
+     *    189: 423
+     *    165: 324
+     *    213: 108
+     * }
+     *
+     * The buckets of the window are combined with ZUNIONSTORE into product:visit:window:<window>:<newest bucket>,
+     * which is kept for window-cache-ttl: repeated queries (any limit, any node) read it instead of redoing the union.
+     * The ZUNIONSTORE and its PEXPIRE run in one MULTI/EXEC, the window key never exists without its TTL.
+     */
+    public Mono<Map<Integer, Double>> topProducts(String window, int limit){
+        List<String> keys;
+        try {
+            keys = this.buckets.windowKeys(window, LocalDateTime.now());
+        } catch (IllegalArgumentException e) {
+            return Mono.error(e);
+        }
+        if (keys.size() == 1) {
+            return top(client.getScoredSortedSet(keys.get(0), IntegerCodec.INSTANCE), limit);
+        }
+        RScoredSortedSetReactive<Integer> union =
+                client.getScoredSortedSet("product:visit:window:" + window + ":" + keys.get(0), IntegerCodec.INSTANCE);
+        return union.isExists()
+                .flatMap(exists -> exists ?
+                        Mono.<Void>empty() :
+                        unionWindow(union.getName(), keys))
+                .then(top(union, limit));
+    }
+
+    // ZUNIONSTORE + PEXPIRE of a window cache key, atomic (also the candidates of topUniqueVisitors)
+    private Mono<Void> unionWindow(String name, List<String> keys){
+        RBatchReactive batch = atomicBatch();
+        RScoredSortedSetReactive<Integer> union = batch.getScoredSortedSet(name, IntegerCodec.INSTANCE);
+        union.union(keys.toArray(new String[0]));
+        union.expire(this.properties.getBuckets().getWindowCacheTtl());
+        return batch.execute()
+                .then();
+    }
+
+    /**
+     * Live ranking for dashboards, shared by every subscriber of the same (window, limit):
+     *  - Redis is polled once per tick for all of them, not once per connection.
+     *  - A frame is emitted only when the ranking changed (products, order or counts).
+     *  - A new subscriber gets the latest ranking right away (replay 1), then the changes.
+     *  - The poll runs while at least one subscriber is connected. The stream is dropped with its last subscriber,
+     *    the next one starts a new one.
+     *  - Streams are keyed on the parsed window: 60m and 1h share one.
+     *  - A failed poll is skipped, it does not end the stream for everyone.
+     */
+    public Flux<Map<Integer, Double>> topProductsStream(String window, int limit){
+        Object duration;
+        try {
+            // Fails fast on an invalid window, before a stream is created for it
+            duration = VisitBuckets.TODAY.equals(window) ? VisitBuckets.TODAY : this.buckets.parse(window);
+        } catch (IllegalArgumentException e) {
+            return Flux.error(e);
+        }
+        int n = Math.min(Math.max(1, limit), MAX_LIMIT);
+        return this.streams.computeIfAbsent(List.of(duration, n), key -> rankingStream(key, window, n));
+    }
+
+    private Flux<Map<Integer, Double>> rankingStream(List<Object> key, String window, int n){
+        AtomicReference<Flux<Map<Integer, Double>>> self = new AtomicReference<>();
+        Flux<Map<Integer, Double>> stream = Flux.interval(Duration.ZERO, TICK)
+                .onBackpressureDrop()
+                .concatMap(tick -> topProducts(window, n)
+                        .onErrorResume(e -> {
+                            log.warn("BusinessMetricsService - ranking {} poll failed: {}", key, e.toString());
+                            return Mono.empty();
+                        }))
+                // Entry lists compare the order too, Map.equals does not
+                .distinctUntilChanged(ranking -> List.copyOf(ranking.entrySet()))
+                // Last subscriber gone: drop the entry, unless it already holds a newer stream of the same key
+                .doFinally(signal -> this.streams.remove(key, self.get()))
+                .replay(1)
+                .refCount();
+        self.set(stream);
+        return stream;
+    }
+
+    /**
+     * Unique visitors of a product over the last `days` days (1 = today).
+     * Several days are rolled up with PFMERGE into product:visitors:<days>d:<today>:<id>,
+     * kept for window-cache-ttl like the ranking windows (PFMERGE and PEXPIRE in one MULTI/EXEC).
+     */
+    public Mono<Long> uniqueVisitors(int productId, int days){
+        List<LocalDate> dates;
+        try {
+            dates = this.buckets.visitorDays(days, LocalDate.now());
+        } catch (IllegalArgumentException e) {
+            return Mono.error(e);
+        }
+        if (dates.size() == 1) {
+            return visitorLog(VisitBuckets.visitorsKey(dates.get(0), productId)).count();
+        }
+        RHyperLogLogReactive<String> rollup = visitorLog(VisitBuckets.visitorsRollupKey(productId, days, dates.get(0)));
+        return rollup.isExists()
+                .flatMap(exists -> exists ?
+                        Mono.<Void>empty() :
+                        mergeWindow(rollup.getName(), dates.stream()
+                                .map(date -> VisitBuckets.visitorsKey(date, productId))
+                                .toList()))
+                .then(rollup.count());
+    }
+
+    // PFMERGE + PEXPIRE of a roll-up key, atomic
+    private Mono<Void> mergeWindow(String name, List<String> keys){
+        RBatchReactive batch = atomicBatch();
+        RHyperLogLogReactive<String> rollup = batch.getHyperLogLog(name, StringCodec.INSTANCE);
+        rollup.mergeWith(keys.toArray(new String[0]));
+        rollup.expire(this.properties.getBuckets().getWindowCacheTtl());
+        return batch.execute()
+                .then();
+    }
+
+    /**
+     * Top products by unique visitors over the last `days` days.
+     *  - Today: read from the day's ranking, written by the visit flush.
+     *  - Several days: the daily rankings are summed (ZUNIONSTORE, an upper bound: a client visiting on
+     *    two days counts twice) to pick candidates, which are then ranked by their PFMERGE roll-up.
+     */
+    public Mono<Map<Integer, Long>> topUniqueVisitors(int days, int limit){
+        List<LocalDate> dates;
+        try {
+            dates = this.buckets.visitorDays(days, LocalDate.now());
+        } catch (IllegalArgumentException e) {
+            return Mono.error(e);
+        }
+        int n = Math.min(Math.max(1, limit), MAX_LIMIT);
+        if (dates.size() == 1) {
+            return top(client.getScoredSortedSet(VisitBuckets.visitorsRankKey(dates.get(0)), IntegerCodec.INSTANCE), n)
+                    .map(ranking -> ranking.entrySet().stream().collect(
+                            Collectors.toMap(Map.Entry::getKey, e -> e.getValue().longValue(), (a, b) -> a, LinkedHashMap::new)));
+        }
+        RScoredSortedSetReactive<Integer> candidates = client.getScoredSortedSet(
+                VisitBuckets.visitorsRankKey(dates.get(0)) + ":" + days + "d", IntegerCodec.INSTANCE);
+        return candidates.isExists()
+                .flatMap(exists -> exists ?
+                        Mono.<Void>empty() :
+                        unionWindow(candidates.getName(), dates.stream().map(VisitBuckets::visitorsRankKey).toList()))
+                .then(candidates.valueRangeReversed(0, n * 4 - 1))
+                .flatMapMany(Flux::fromIterable)
+                .flatMap(productId -> uniqueVisitors(productId, days).map(count -> Map.entry(productId, count)))
+                .sort(Map.Entry.<Integer, Long>comparingByValue(Comparator.reverseOrder()))
+                .take(n)
+                .collect(LinkedHashMap::new, (ranking, e) -> ranking.put(e.getKey(), e.getValue()));
+    }
+
+    // MULTI/EXEC, a crash or a lost connection cannot leave half of the commands applied
+    private RBatchReactive atomicBatch(){
+        return client.createBatch(BatchOptions.defaults()
+                .executionMode(BatchOptions.ExecutionMode.IN_MEMORY_ATOMIC));
+    }
+
+    private RHyperLogLogReactive<String> visitorLog(String key){
+        return client.getHyperLogLog(key, StringCodec.INSTANCE);
+    }
 
+    private Mono<Map<Integer, Double>> top(RScoredSortedSetReactive<Integer> set, int limit){
         // Redis Set order is ascending by default
-        // reverse the order and get the top 3
-        return set.entryRangeReversed(0, 2)  // list of scored entry
+        // reverse the order and get the top N
+        return set.entryRangeReversed(0, Math.max(1, limit) - 1)  // list of scored entry
             .map(listSe -> listSe.stream().collect(
                     Collectors.toMap(
                             ScoredEntry::getValue,
@@ -0,0 +1,135 @@
+package com.performance.service;
+
+import com.example.templates.CacheTemplate;
+import com.performance.config.ProductCacheProperties;
+import com.performance.model.Product;
+import com.performance.util.VisitBuckets;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RScoredSortedSetReactive;
+import org.redisson.api.RedissonReactiveClient;
+import org.redisson.client.codec.IntegerCodec;
+import org.redisson.client.protocol.ScoredEntry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Hot-set warm-up of the product cache, so that a deploy or a Redis flush does not send
+ * the first minutes of traffic to Postgres:
+ *
+ *  - Candidates: the maxProducts most visited products of the last `days` daily visit sets
+ *    (ZUNIONSTORE of product:visit:<date>), most visited first.
+ *  - Loaded in chunks through the cache (warm, no admission filter): one bulk read of the chunk from Redis,
+ *    one findAllById of its misses and one bulk write into the cache, concurrency chunks in flight.
+ *  - Stops once the warmed products account for targetCoverage of the candidates' visits,
+ *    or when the time budget is spent.
+ *
+ * Runs at startup after DataSetupService: readiness (ACCEPTING_TRAFFIC) waits for it.
+ * Also triggered before a cutover with POST /product/cache/warmup.
+ */
+@Service
+@Slf4j
+@Order(1)
+public class CacheWarmupService implements CommandLineRunner {
+
+    @Autowired
+    private RedissonReactiveClient client;
+
+    @Autowired
+    private CacheTemplate<Integer, Product> cacheTemplate;
+
+    @Autowired
+    private ProductCacheProperties properties;
+
+    @Override
+    public void run(String... args) {
+        ProductCacheProperties.Warmup warmup = this.properties.getWarmup();
+        if (!warmup.isEnabled()) {
+            return;
+        }
+        // The budget applies to the loading, a little margin for the candidate query
+        Map<String, Number> result = warmup()
+                .timeout(warmup.getTimeBudget().plusSeconds(5))
+                .onErrorResume(e -> {
+                    log.warn("CacheWarmupService - warm-up failed, starting cold: {}", e.toString());
+                    return Mono.empty();
+                })
+                .block();
+        log.info("CacheWarmupService - {}", result);
+    }
+
+    /**
+     * candidates, warmed (products now cached), coverage, elapsedMs, complete (0 when the budget ran out)
+     */
+    public Mono<Map<String, Number>> warmup(){
+        ProductCacheProperties.Warmup warmup = this.properties.getWarmup();
+        long start = System.nanoTime();
+        return candidates(warmup)
+                .flatMap(candidates -> {
+                    double total = candidates.stream().mapToDouble(ScoredEntry::getScore).sum();
+                    double target = total * warmup.getTargetCoverage();
+                    LongAdder warmed = new LongAdder();
+                    // Visits of the warmed products
+                    DoubleAdder covered = new DoubleAdder();
+                    return Flux.fromIterable(candidates)
+                            .buffer(warmup.getChunkSize())
+                            // Only the entries actually in the cache count, a failed cache write covers nothing
+                            .flatMap(chunk -> this.cacheTemplate.warm(chunk.stream().map(ScoredEntry::getValue).toList())
+                                    .map(cached -> {
+                                        warmed.add(cached.size());
+                                        chunk.forEach(e -> {
+                                            if (cached.contains(e.getValue())) {
+                                                covered.add(e.getScore());
+                                            }
+                                        });
+                                        return covered.sum();
+                                    }), warmup.getConcurrency())
+                            // No new chunk once the target is reached
+                            .takeUntil(coverage -> coverage >= target)
+                            .take(warmup.getTimeBudget())
+                            .then(Mono.fromSupplier(() -> {
+                                double coverage = total == 0 ? 1 : covered.sum() / total;
+                                Map<String, Number> result = new LinkedHashMap<>();
+                                result.put("candidates", candidates.size());
+                                result.put("warmed", warmed.sum());
+                                result.put("coverage", coverage);
+                                result.put("elapsedMs", (System.nanoTime() - start) / 1_000_000);
+                                result.put("complete", coverage >= warmup.getTargetCoverage() ? 1 : 0);
+                                return result;
+                            }));
+                });
+    }
+
+    // The most visited products of the last days, most visited first
+    private Mono<Collection<ScoredEntry<Integer>>> candidates(ProductCacheProperties.Warmup warmup){
+        LocalDate today = LocalDate.now();
+        List<String> days = new ArrayList<>();
+        for (int i = 0; i < Math.max(1, warmup.getDays()); i++) {
+            days.add(VisitBuckets.dayKey(today.minusDays(i)));
+        }
+        int last = warmup.getMaxProducts() - 1;
+        if (days.size() == 1) {
+            return this.client.<Integer>getScoredSortedSet(days.get(0), IntegerCodec.INSTANCE)
+                    .entryRangeReversed(0, last);
+        }
+        RScoredSortedSetReactive<Integer> union =
+                this.client.getScoredSortedSet("product:visit:warmup:" + days.get(0) + ":" + days.size() + "d", IntegerCodec.INSTANCE);
+        return union.union(days.toArray(new String[0]))
+                .then(union.expire(Duration.ofMinutes(1)))
+                .then(union.entryRangeReversed(0, last));
+    }
+
+}
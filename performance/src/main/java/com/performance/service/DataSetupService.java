@@ -1,11 +1,14 @@
 package com.performance.service;
 
+import com.example.templates.CacheTemplate;
+import com.performance.config.ProductDataProperties;
 import com.performance.model.Product;
-import com.performance.repository.ProductRepository;
+import com.performance.util.ProductBulkLoader;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.CommandLineRunner;
+import org.springframework.core.annotation.Order;
 import org.springframework.core.io.Resource;
 import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
 import org.springframework.stereotype.Service;
@@ -14,23 +17,34 @@ import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.nio.charset.StandardCharsets;
-import java.util.concurrent.ThreadLocalRandom;
+import java.util.Set;
 
 /**
- * Service to set up initial data in the database when app starts, but before the app is ready to serve requests..
- * It reads a SQL schema file and inserts 1000 products into the database.
+ * Service to set up initial data in the database when app starts, but before the app is ready to serve requests.
+ * It reads a SQL schema file, then bulk loads the products (ProductBulkLoader):
+ * product.data.rows generated products, or the lines of product.data.import-file.
+ *
+ * run() blocks until the load (and the optional cache pre-fill) has completed:
+ * Spring Boot only switches readiness to ACCEPTING_TRAFFIC after the runners,
+ * so /actuator/health/readiness stays down (and benchmarks wait) until the table is complete.
+ * A failed or timed out load fails the startup.
  */
 @Service
 @Slf4j
+// Before the cache warm-up (CacheWarmupService)
+@Order(0)
 public class DataSetupService implements CommandLineRunner {
 
-    @Autowired
-    private ProductRepository repository;
-
     // Low-level reactive database API for custom queries, schema creation, etc.
     @Autowired
     private R2dbcEntityTemplate entityTemplate;
 
+    @Autowired
+    private CacheTemplate<Integer, Product> cacheTemplate;
+
+    @Autowired
+    private ProductDataProperties properties;
+
     @Value("classpath:schema.sql")
     private Resource resource;
 
@@ -40,25 +54,42 @@ public class DataSetupService implements CommandLineRunner {
                             StandardCharsets.UTF_8);
         log.info("Running query: {}", query);
 
-        Mono<Void> insert = Flux.range(1, 1000)
-                .map(i ->
-                        new Product(null, "product " + i,
-                                // Generate a random price between 1 and 100 Async
-                                ThreadLocalRandom.current()
-                                        .nextInt(1, 100)))
-                .collectList()
-                // saveAll returns a Flux<Product> of saved products -> use flatMapMany
-                .flatMapMany(l -> this.repository.saveAll(l))
-                .then();
+        ProductBulkLoader loader = new ProductBulkLoader(this.entityTemplate.getDatabaseClient(),
+                this.properties.getChunkSize(), this.properties.getConcurrency());
+        Flux<Product> products = this.properties.getImportFile() != null ?
+                ProductBulkLoader.csv(this.properties.getImportFile()) :
+                ProductBulkLoader.generate(this.properties.getRows());
 
+        long start = System.nanoTime();
         // Low level reactive database API to run the schema creation query
         // Repository does not support schema creation
-        this.entityTemplate.getDatabaseClient()
+        Long inserted = this.entityTemplate.getDatabaseClient()
                     .sql(query)
                     .then()// Wait for schema to be ready
-                    .then(insert)// Then run insert operation
-                    .doFinally(s -> log.info("Data setup completed. {} products inserted.", 1000))
-                    .subscribe();
+                    .then(loader.load(products))// Then run the bulk load
+                    .flatMap(rows -> {
+                        log.info("Data setup completed. {} products inserted in {} ms.",
+                                rows, (System.nanoTime() - start) / 1_000_000);
+                        return this.properties.isPrefillCache() ?
+                                prefill().thenReturn(rows) :
+                                Mono.just(rows);
+                    })
+                    .block(this.properties.getTimeout());
+        log.info("Data setup ready, {} products.", inserted);
+    }
 
+    // Loads every product through the cache, a bulk source read and a bulk cache write per chunk
+    private Mono<Void> prefill(){
+        long start = System.nanoTime();
+        return this.entityTemplate.getDatabaseClient()
+                .sql("SELECT id FROM products")
+                .map(row -> row.get("id", Integer.class))
+                .all()
+                .buffer(this.properties.getPrefillChunkSize())
+                .flatMap(ids -> this.cacheTemplate.warm(ids).map(Set::size), this.properties.getConcurrency())
+                .reduce(0L, Long::sum)
+                .doOnNext(cached -> log.info("Cache pre-fill completed. {} products cached in {} ms.",
+                        cached, (System.nanoTime() - start) / 1_000_000))
+                .then();
     }
 }
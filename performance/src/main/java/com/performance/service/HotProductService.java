@@ -0,0 +1,218 @@
+package com.performance.service;
+
+import com.example.sketch.SpaceSaving;
+import com.example.templates.CacheTemplate;
+import com.performance.config.ProductVisitProperties;
+import com.performance.model.HotProduct;
+import com.performance.model.Product;
+import com.performance.util.VisitCounters;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RMapReactive;
+import org.redisson.api.RedissonReactiveClient;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Hot products across the cluster, in memory proportional to K instead of the catalog size:
+ *
+ *  - Each node keeps a Space-Saving summary (capacity counters), fed with the windows flushed by ProductVisitService.
+ *  - Every publish interval, the node writes its summary (counters, errors and smallest counter)
+ *    to its field of the product:hot hash, then decays its counters.
+ *  - Merge: the summaries of all live nodes are summed per product. A node that does not track a product
+ *    counted it at most its smallest counter, so the merged estimate is an upper bound
+ *    and the sum of (count - error) a lower bound (HotProduct).
+ *  - The merged top-K is kept locally (getHotProducts, isHot) and, with prefetch, loaded through the product cache
+ *    so the near cache of every node and Redis already hold the hot products.
+ */
+@Service
+@Slf4j
+public class HotProductService {
+
+    private final RedissonReactiveClient client;
+    private final ProductVisitProperties.Hot properties;
+    private final CacheTemplate<Integer, Product> cacheTemplate;
+    private final SpaceSaving<Integer> summary;
+    // "pid@host", unique per running node
+    private final String nodeId = ManagementFactory.getRuntimeMXBean().getName();
+
+    private volatile List<HotProduct> hotProducts = List.of();
+    private volatile Set<Integer> hotIds = Set.of();
+
+    private Disposable publisher;
+
+    public HotProductService(RedissonReactiveClient client, ProductVisitProperties properties,
+                             CacheTemplate<Integer, Product> cacheTemplate) {
+        this.client = client;
+        this.properties = properties.getHot();
+        this.cacheTemplate = cacheTemplate;
+        this.summary = new SpaceSaving<>(this.properties.getCapacity());
+    }
+
+    @PostConstruct
+    private void init(){
+        if (!this.properties.isEnabled()) {
+            return;
+        }
+        this.publisher = Flux.interval(this.properties.getPublishInterval(), this.properties.getPublishInterval())
+                .onBackpressureDrop()
+                .concatMap(tick -> publish()
+                        .then(merge())
+                        .flatMap(this::prefetch)
+                        .onErrorResume(e -> {
+                            log.warn("HotProductService - publish/merge failed: {}", e.toString());
+                            return Mono.empty();
+                        }))
+                .subscribe();
+    }
+
+    @PreDestroy
+    private void destroy(){
+        if (this.publisher != null) {
+            this.publisher.dispose();
+        }
+    }
+
+    // One flushed window of visits (called by the sequential flushes of ProductVisitService)
+    public void offer(VisitCounters.Counts window){
+        if (!this.properties.isEnabled()) {
+            return;
+        }
+        synchronized (this.summary) {
+            window.forEach(this.summary::offer);
+        }
+    }
+
+    // Last merged global top-K, largest estimate first
+    public List<HotProduct> getHotProducts(){
+        return this.hotProducts;
+    }
+
+    public boolean isHot(int productId){
+        return this.hotIds.contains(productId);
+    }
+
+    public Map<String, Number> getStats(){
+        Map<String, Number> stats = new LinkedHashMap<>();
+        synchronized (this.summary) {
+            stats.put("hot.local.total", this.summary.getTotal());
+            stats.put("hot.local.min", this.summary.getMinCount());
+        }
+        stats.put("hot.products", this.hotProducts.size());
+        return stats;
+    }
+
+    // Field of this node: "publishedAt;minCount;id:count:error,id:count:error..."
+    private Mono<Void> publish(){
+        String encoded;
+        synchronized (this.summary) {
+            StringBuilder builder = new StringBuilder()
+                    .append(System.currentTimeMillis()).append(';')
+                    .append(this.summary.getMinCount()).append(';');
+            List<SpaceSaving.Counter<Integer>> counters = this.summary.top(this.summary.getCapacity());
+            builder.append(counters.stream()
+                    .map(c -> c.getItem() + ":" + c.getCount() + ":" + c.getError())
+                    .collect(Collectors.joining(",")));
+            this.summary.decay(this.properties.getDecay());
+            encoded = builder.toString();
+        }
+        return nodes().fastPut(this.nodeId, encoded).then();
+    }
+
+    private Mono<List<HotProduct>> merge(){
+        RMapReactive<String, String> nodes = nodes();
+        return nodes.readAllMap()
+                .flatMap(summaries -> {
+                    long oldest = System.currentTimeMillis() - this.properties.getNodeExpiry().toMillis();
+                    List<String> expired = new ArrayList<>();
+                    List<NodeSummary> live = new ArrayList<>();
+                    summaries.forEach((node, value) -> {
+                        NodeSummary summary = NodeSummary.parse(value);
+                        if (summary.publishedAt < oldest) {
+                            expired.add(node);
+                        } else {
+                            live.add(summary);
+                        }
+                    });
+                    List<HotProduct> merged = merge(live, this.properties.getTopK());
+                    this.hotProducts = merged;
+                    this.hotIds = merged.stream().map(HotProduct::getProductId).collect(Collectors.toUnmodifiableSet());
+                    return expired.isEmpty() ?
+                            Mono.just(merged) :
+                            nodes.fastRemove(expired.toArray(new String[0])).thenReturn(merged);
+                });
+    }
+
+    private static List<HotProduct> merge(List<NodeSummary> summaries, int topK){
+        Map<Integer, HotProduct> merged = new HashMap<>();
+        for (NodeSummary summary : summaries) {
+            summary.counts.forEach((id, counts) -> {
+                HotProduct product = merged.computeIfAbsent(id, k -> new HotProduct(k, 0, 0));
+                product.setEstimate(product.getEstimate() + counts[0]);
+                product.setLowerBound(product.getLowerBound() + counts[0] - counts[1]);
+            });
+        }
+        // Nodes not tracking a product may still have counted it, up to their smallest counter
+        for (HotProduct product : merged.values()) {
+            for (NodeSummary summary : summaries) {
+                if (!summary.counts.containsKey(product.getProductId())) {
+                    product.setEstimate(product.getEstimate() + summary.minCount);
+                }
+            }
+        }
+        return merged.values().stream()
+                .sorted(Comparator.comparingLong(HotProduct::getEstimate).reversed())
+                .limit(topK)
+                .toList();
+    }
+
+    private Mono<Void> prefetch(List<HotProduct> hot){
+        if (!this.properties.isPrefetch() || hot.isEmpty()) {
+            return Mono.empty();
+        }
+        return this.cacheTemplate.warm(hot.stream().map(HotProduct::getProductId).toList())
+                .then();
+    }
+
+    private RMapReactive<String, String> nodes(){
+        return this.client.getMap(this.properties.getKey(), StringCodec.INSTANCE);
+    }
+
+    private static class NodeSummary {
+
+        private long publishedAt;
+        private long minCount;
+        // id → {count, error}
+        private final Map<Integer, long[]> counts = new HashMap<>();
+
+        private static NodeSummary parse(String value){
+            String[] parts = value.split(";", 3);
+            NodeSummary summary = new NodeSummary();
+            summary.publishedAt = Long.parseLong(parts[0]);
+            summary.minCount = Long.parseLong(parts[1]);
+            if (!parts[2].isEmpty()) {
+                for (String counter : parts[2].split(",")) {
+                    String[] fields = counter.split(":");
+                    summary.counts.put(Integer.parseInt(fields[0]),
+                            new long[]{Long.parseLong(fields[1]), Long.parseLong(fields[2])});
+                }
+            }
+            return summary;
+        }
+    }
+
+}
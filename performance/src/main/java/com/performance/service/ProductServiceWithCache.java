@@ -2,10 +2,16 @@ package com.performance.service;
 
 import com.performance.model.Product;
 import com.example.templates.CacheTemplate;
+import com.example.templates.HotKeyReplica;
+import com.performance.util.ProductHashCacheTemplate;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.List;
+import java.util.Map;
+
 @Service
 public class ProductServiceWithCache {
 
@@ -15,24 +21,79 @@ public class ProductServiceWithCache {
     @Autowired
     private ProductVisitService visitService;
 
-    // GET
-    public Mono<Product> getProduct(int id){
-        return this.cacheTemplate.get(id)
-                                .doFirst(() -> this.visitService.addVisit(id))
+    // Only with product.cache.hot-keys.enabled
+    @Autowired(required = false)
+    private HotKeyReplica<Integer, Product> hotKeys;
+
+    // GET, clientId (nullable) is counted in the product's unique visitors
+    // Hot products are served from the in-process replica
+    public Mono<Product> getProduct(int id, String clientId){
+        Mono<Product> product = this.hotKeys != null ?
+                this.hotKeys.get(id, this.cacheTemplate::get) :
+                this.cacheTemplate.get(id);
+        return product
+                                .doFirst(() -> this.visitService.addVisit(id, clientId))
                 ;
     }
 
+    // GET multiple ids, cache hits and source misses are resolved in bulk
+    public Flux<Product> getProducts(List<Integer> ids, String clientId){
+        return this.cacheTemplate.getAll(ids)
+                                .doFirst(() -> ids.forEach(id -> this.visitService.addVisit(id, clientId)))
+                                .flatMapIterable(Map::values);
+    }
+
     // PUT
     public Mono<Product> updateProduct(Product product){
-        return this.cacheTemplate.update(product.getId(), product);
+        return this.cacheTemplate.update(product.getId(), product)
+                .flatMap(p -> invalidateHotKey(product.getId()).thenReturn(p));
+    }
+
+    /**
+     * PATCH price only.
+     * With the hash layout, one column and one hash field are written (ProductHashCacheTemplate.updatePrice).
+     * Otherwise, or when a near cache / write-behind sits in front of Redis and must see the write,
+     * the whole product goes through update(). Emits false when the product does not exist.
+     */
+    public Mono<Boolean> updatePrice(int id, double price){
+        Mono<Boolean> updated;
+        if (this.cacheTemplate instanceof ProductHashCacheTemplate hashCache && !hashCache.isWriteBehind()) {
+            updated = hashCache.updatePrice(id, price);
+        } else {
+            updated = this.cacheTemplate.get(id)
+                    // Copy, the cached instance may be shared (near cache)
+                    .flatMap(p -> this.cacheTemplate.update(id, new Product(id, p.getDescription(), price)))
+                    .hasElement();
+        }
+        return updated
+                .flatMap(found -> invalidateHotKey(id).thenReturn(found));
+    }
+
+    // GET price only, a single hash field with the hash layout
+    public Mono<Double> getPrice(int id){
+        if (this.cacheTemplate instanceof ProductHashCacheTemplate hashCache) {
+            return hashCache.getPrice(id);
+        }
+        return this.cacheTemplate.get(id)
+                .map(Product::getPrice);
     }
 
     // DELETE
     public Mono<Boolean> deleteProduct(int id){
-        return this.cacheTemplate.delete(id);
+        return this.cacheTemplate.delete(id)
+                .flatMap(deleted -> invalidateHotKey(id).thenReturn(deleted));
     }
 
     // INSERT
+    public Mono<Product> insertProduct(Product product){
+        return this.cacheTemplate.insert(product);
+    }
 
+    // Replicas of a changed product are dropped on every node
+    private Mono<Void> invalidateHotKey(int id){
+        return this.hotKeys != null ?
+                this.hotKeys.invalidate(id) :
+                Mono.empty();
+    }
 
 }
@@ -1,103 +1,272 @@
 package com.performance.service;
 
+import com.performance.config.ProductVisitProperties;
+import com.performance.util.VisitBuckets;
+import com.performance.util.VisitCounters;
+import com.performance.util.VisitStream;
+import com.performance.util.VisitorBuffer;
+import lombok.extern.slf4j.Slf4j;
 import org.redisson.api.BatchOptions;
 import org.redisson.api.RBatchReactive;
+import org.redisson.api.RHyperLogLogReactive;
 import org.redisson.api.RScoredSortedSetReactive;
 import org.redisson.api.RedissonReactiveClient;
 import org.redisson.client.codec.IntegerCodec;
+import org.redisson.client.codec.StringCodec;
 import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
-import reactor.core.publisher.Sinks;
 
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
 import java.time.Duration;
 import java.time.LocalDate;
-import java.time.format.DateTimeFormatter;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.function.Function;
-import java.util.stream.Collectors;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Product visit count service:
  *
- *  - Collect incoming product visit events (product IDs).
- *  - Batch them every 10 seconds.
- *  - Aggregate counts per product ID.
- *  - Update Redis in a single Redisson reactive batch.
+ *  - Count incoming product visits in memory (VisitCounters: striped primitive int → long tables).
+ *  - Every flush interval (10 seconds), swap the counters and send the window's counts
+ *    to Redis in a single Redisson reactive batch (one addScore per product).
  *
- * Sink with backpressure buffer avoids data loss under high load.
+ * Compared to buffering every visit (a Sinks.Many of boxed ids, then a List per window, then groupingBy):
+ *  - addVisit allocates nothing, memory is bounded by the number of distinct products, not by the traffic.
+ *  - A window that cannot be flushed (Redis down) is carried over and merged into the next one,
+ *    its visits are counted as late. Visits of products beyond max-products are dropped.
+ *    Both are reported (getStats, and a warning per window) instead of being lost silently.
+ *  - Each window also feeds the node's heavy-hitter summary (HotProductService).
  *
- * Type:
- *  - Many (Sinks.Many<T>): Used when expect multiple elements over time (like an event stream).
- *    - unicast() → only one subscriber allowed, keeps order.
- *    - multicast() → broadcasts to many subscribers, but only sends new events after subscription.
- *    - replay() → broadcasts to many subscribers and can replay past events to new subscribers.
- *  - One (Sinks.One<T>): Emits exactly one value (or an error) to a single subscriber.
- *  - Empty (Sinks.Empty<T>): Just emits a completion or error signal (no data).
- * Emit:
- *  - emitNext() → strict, throws if it can’t emit (e.g., sink closed).
- *  - tryEmitNext() → returns a result (EmitResult) instead of throwing.
+ * Unique visitors (product.visit.visitors.enabled):
+ *  - The distinct clients of each product in the window (VisitorBuffer) are PFADDed to the product's daily
+ *    HyperLogLog by the same flush, and the day's unique visitor ranking is refreshed with the new estimates.
+ *    A failed write is carried over to the next window (PFADD is idempotent).
+ *
+ * Durable mode (product.visit.durable.enabled):
+ *  - Windows are appended to a Redis stream every append interval (1 second) instead of being applied directly,
+ *    and every node aggregates the stream into the sorted sets (VisitStream), so a restart or a deploy
+ *    loses at most the last append interval instead of the last 10 seconds.
  */
 @Service
+@Slf4j
 public class ProductVisitService {
 
     private final RedissonReactiveClient client;
-    // Reactive sink to push product IDs into a reactive pipeline.
-    private final Sinks.Many<Integer> sink;
+    private final ProductVisitProperties properties;
+    private final VisitCounters counters;
+    private final VisitBuckets buckets;
+    private final HotProductService hotProducts;
+    // Only with unique visitor counting
+    private final VisitorBuffer visitors;
+    // Only in durable mode
+    private final VisitStream visitStream;
+
+    // Window whose flush failed, merged into the next one. Only touched by the (sequential) flushes
+    private volatile VisitCounters.Counts pending;
+
+    private final LongAdder flushed = new LongAdder();
+    private final LongAdder late = new LongAdder();
+    private final LongAdder windows = new LongAdder();
+    private final LongAdder failedFlushes = new LongAdder();
 
-    public ProductVisitService(RedissonReactiveClient client) {
+    private Disposable flusher;
+
+    public ProductVisitService(RedissonReactiveClient client, ProductVisitProperties properties, VisitBuckets buckets,
+                               HotProductService hotProducts) {
         this.client = client;
-        // Only one subscriber and If events come faster than they can be processed,
-        // they’re buffered in memory.
-        this.sink = Sinks.many().unicast().onBackpressureBuffer();
+        this.properties = properties;
+        this.buckets = buckets;
+        this.hotProducts = hotProducts;
+        this.visitors = properties.getVisitors().isEnabled() ?
+                new VisitorBuffer(properties.getVisitors().getMaxPairs()) :
+                null;
+        this.counters = new VisitCounters(properties.getStripes(), properties.getMaxProducts());
+        ProductVisitProperties.Durable durable = properties.getDurable();
+        this.visitStream = durable.isEnabled() ?
+                new VisitStream(client, durable.getStream(), durable.getGroup(), consumerName(durable),
+                        durable.getBatchSize(), durable.getClaimIdle()) :
+                null;
     }
 
     @PostConstruct
     private void init(){
-        // Converts sink into a reactive stream (asFlux()).
-        this.sink
-                .asFlux()
-                // Every 10 seconds, collect all product IDs emitted in that time
-                // window into a List<Integer>.
-                .buffer(Duration.ofSeconds(10)) // list of productIds: (1,2,1,1,3,5,1...)
-                // Convert the list into a Map<Integer, Long> where:
-                // Key = product ID, Value = number of visits in that batch.
-                .map(l -> l.stream().collect(    // 1:4, 2:1, 3:1, 5:1,
-                        Collectors.groupingBy(
-                                Function.identity(),
-                                Collectors.counting()
-                        )
-                ))
-                // Pass aggregated counts to updateBatch.
-                .flatMap(this::updateBatch)
-                // Subscribe to start the flow.
+        Duration interval = this.visitStream != null ?
+                this.properties.getDurable().getAppendInterval() :
+                this.properties.getFlushInterval();
+        if (this.visitStream != null) {
+            this.visitStream.start(this.properties.getDurable().getAggregateInterval());
+        }
+        this.flusher = Flux.interval(interval, interval)
+                // Ticks during a slow flush are skipped, the next window is just longer
+                .onBackpressureDrop()
+                // One flush at a time, windows never overlap
+                .concatMap(tick -> flush())
                 .subscribe();
     }
 
-    // Pushes a product ID into the reactive sink.
-    // non-blocking and just enqueues for later batch processing.
+    // Last window on shutdown, while the Redisson client is still up
+    @PreDestroy
+    private void destroy(){
+        this.flusher.dispose();
+        flush().block(Duration.ofSeconds(5));
+        if (this.visitStream != null) {
+            this.visitStream.close();
+        }
+    }
+
+    // Counts a product visit, non-blocking and allocation-free
     public void addVisit(int productId){
-        this.sink.tryEmitNext(productId);
+        this.counters.increment(productId);
+    }
+
+    // Counts a product visit and its client for the unique visitors, clientId may be null (not identified)
+    public void addVisit(int productId, String clientId){
+        this.counters.increment(productId);
+        if (this.visitors != null && clientId != null) {
+            this.visitors.add(productId, clientId);
+        }
     }
 
-    private Mono<Void> updateBatch(Map<Integer, Long> map){
+    public Map<String, Number> getStats(){
+        VisitCounters.Counts carried = this.pending;
+        Map<String, Number> stats = new LinkedHashMap<>();
+        stats.put("visits.flushed", this.flushed.sum());
+        stats.put("visits.late", this.late.sum());
+        stats.put("visits.dropped", this.counters.getDropped());
+        stats.put("visits.pending", carried == null ? 0 : carried.total());
+        stats.put("windows", this.windows.sum());
+        stats.put("windows.failed", this.failedFlushes.sum());
+        if (this.visitors != null) {
+            stats.put("visitors.dropped", this.visitors.getDropped());
+        }
+        if (this.visitStream != null) {
+            stats.putAll(this.visitStream.getStats());
+        }
+        stats.putAll(this.hotProducts.getStats());
+        return stats;
+    }
+
+    private Mono<Void> flush(){
+        return Mono.defer(() -> {
+            VisitCounters.Counts carried = this.pending;
+            this.pending = null;
+            long droppedBefore = this.counters.getDropped();
+            VisitCounters.Counts window = this.counters.swap(null);
+            // Fresh visits only, carried ones were offered with their own window
+            this.hotProducts.offer(window);
+            this.windows.increment();
+            if (carried != null) {
+                this.counters.carry(window, carried);
+                this.late.add(carried.total());
+            }
+            long dropped = this.counters.getDropped() - droppedBefore;
+            if (dropped > 0 || carried != null) {
+                log.warn("ProductVisitService - window: {} visits of {} products, {} late (carried over), {} dropped",
+                        window.total(), window.size(), carried == null ? 0 : carried.total(), dropped);
+            }
+            Mono<Void> visitorsWrite = this.visitors != null ?
+                    updateVisitors(this.visitors.swap()) :
+                    Mono.empty();
+            if (window.isEmpty()) {
+                return visitorsWrite;
+            }
+            Mono<Void> write = this.visitStream != null ?
+                    this.visitStream.append(this.buckets.bucketsAt(LocalDateTime.now()), window) :
+                    updateBatch(window);
+            return Mono.when(write
+                    .doOnSuccess(v -> this.flushed.add(window.total()))
+                    .onErrorResume(e -> {
+                        log.warn("ProductVisitService - flush failed, {} visits carried over: {}", window.total(), e.toString());
+                        this.failedFlushes.increment();
+                        this.pending = window;
+                        return Mono.empty();
+                    }), visitorsWrite);
+        });
+    }
+
+    /**
+     * One batch: PFADD of each product's clients to its daily HyperLogLog, then PFCOUNT of it.
+     * The estimates are then written (ZADD, not incremented) to the day's ranking,
+     * so every node writes the current estimate and repeated visitors never add up.
+     */
+    private Mono<Void> updateVisitors(Map<Integer, Set<String>> window){
+        if (window.isEmpty()) {
+            return Mono.empty();
+        }
+        LocalDate today = LocalDate.now();
+        Duration retention = this.properties.getVisitors().getRetention();
+        List<Integer> productIds = new ArrayList<>(window.keySet());
+        RBatchReactive batch = this.client.createBatch(BatchOptions.defaults());
+        for (Integer productId : productIds) {
+            RHyperLogLogReactive<String> visitorLog =
+                    batch.getHyperLogLog(VisitBuckets.visitorsKey(today, productId), StringCodec.INSTANCE);
+            visitorLog.addAll(window.get(productId));
+            visitorLog.expire(retention);
+            visitorLog.count();
+        }
+        return batch.execute()
+                .flatMap(result -> {
+                    // 3 responses per product: addAll, expire, count
+                    Map<Integer, Double> estimates = new HashMap<>();
+                    for (int i = 0; i < productIds.size(); i++) {
+                        estimates.put(productIds.get(i), ((Number) result.getResponses().get(i * 3 + 2)).doubleValue());
+                    }
+                    RScoredSortedSetReactive<Integer> ranking =
+                            this.client.getScoredSortedSet(VisitBuckets.visitorsRankKey(today), IntegerCodec.INSTANCE);
+                    return ranking.addAll(estimates)
+                            .then(ranking.expire(retention));
+                })
+                .then()
+                .onErrorResume(e -> {
+                    log.warn("ProductVisitService - unique visitors write failed, {} products carried over: {}",
+                            productIds.size(), e.toString());
+                    this.visitors.carry(window);
+                    return Mono.empty();
+                });
+    }
+
+    private Mono<Void> updateBatch(VisitCounters.Counts window){
         // Groups multiple Redis commands into a single network round-trip.
         RBatchReactive batch = this.client.createBatch(BatchOptions.defaults());
-        // Key name → "product:visit:YYYYMMdd" → Each day has its own sorted set.
-        String format = DateTimeFormatter.ofPattern("YYYYMMdd").format(LocalDate.now());
-        // Redis sorted set where:
-        // Member = product ID - Score = visit count.
-        RScoredSortedSetReactive<Integer> set =
-                batch.getScoredSortedSet("product:visit:" + format, IntegerCodec.INSTANCE);
-
-        // For each (productId, count) in the map:
-        return Flux.fromIterable(map.entrySet())
-                // set.addScore(productId, count) increments score.
-                .map(entry -> set.addScore(entry.getKey(), entry.getValue()))
-                // batch.execute() sends all increments at once to Redis.
-                .then(batch.execute())
+        // Key name → "product:visit:yyyyMMdd" → Each day has its own sorted set,
+        // plus the minute and hour buckets of the sliding window rankings.
+        for (VisitBuckets.Bucket bucket : this.buckets.bucketsAt(LocalDateTime.now())) {
+            // Redis sorted set where:
+            // Member = product ID - Score = visit count.
+            RScoredSortedSetReactive<Integer> set =
+                    batch.getScoredSortedSet(bucket.getName(), IntegerCodec.INSTANCE);
+            // set.addScore(productId, count) increments score, for each (productId, count) of the window.
+            window.forEach((productId, count) -> set.addScore(productId, count));
+            if (bucket.getTtl() != null) {
+                set.expire(bucket.getTtl());
+            }
+        }
+        // batch.execute() sends all increments at once to Redis.
+        return batch.execute()
                 .then();
     }
 
+    private static String consumerName(ProductVisitProperties.Durable durable){
+        if (durable.getConsumer() != null && !durable.getConsumer().isBlank()) {
+            return durable.getConsumer();
+        }
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            // Not stable across restarts, this node's pending entries are claimed after claim-idle
+            return UUID.randomUUID().toString();
+        }
+    }
+
 }
@@ -0,0 +1,122 @@
+package com.performance.util;
+
+import com.example.templates.CacheEntry;
+import com.performance.model.Product;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.ByteBufOutputStream;
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaBuilder;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.io.BinaryDecoder;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.DecoderFactory;
+import org.apache.avro.io.EncoderFactory;
+import org.redisson.client.codec.BaseCodec;
+import org.redisson.client.codec.IntegerCodec;
+import org.redisson.client.protocol.Decoder;
+import org.redisson.client.protocol.Encoder;
+
+import java.io.IOException;
+
+/**
+ * Schema-based binary format (Avro) of a CacheEntry<Product>:
+ *  - The schema lives in the code, not in the payload: values are written in schema order, ints and longs as varints.
+ *  - Adding a field with a default keeps old entries readable (schema resolution), unlike the hand-written layout.
+ *  - Generic records, no code generation step in the build.
+ *
+ * Hash fields (the product ids) are plain decimal strings, see IntegerCodec.
+ */
+public class ProductAvroCodec extends BaseCodec {
+
+    private static final Schema PRODUCT = SchemaBuilder.record("Product").namespace("com.performance.model")
+            .fields()
+            .optionalInt("id")
+            .optionalString("description")
+            .requiredDouble("price")
+            .endRecord();
+
+    private static final Schema ENTRY = SchemaBuilder.record("ProductCacheEntry").namespace("com.performance.model")
+            .fields()
+            .name("value").type().unionOf().nullType().and().type(PRODUCT).endUnion().nullDefault()
+            .requiredLong("loadedAt")
+            .requiredLong("loadTime")
+            .requiredLong("staleAt")
+            .requiredLong("expireAt")
+            .endRecord();
+
+    private final GenericDatumWriter<GenericRecord> writer = new GenericDatumWriter<>(ENTRY);
+    private final GenericDatumReader<GenericRecord> reader = new GenericDatumReader<>(ENTRY);
+
+    @SuppressWarnings("unchecked")
+    private final Encoder encoder = in -> {
+        CacheEntry<Product> entry = (CacheEntry<Product>) in;
+        GenericRecord record = new GenericData.Record(ENTRY);
+        Product product = entry.getValue();
+        if (product != null) {
+            GenericRecord value = new GenericData.Record(PRODUCT);
+            value.put("id", product.getId());
+            value.put("description", product.getDescription());
+            value.put("price", product.getPrice());
+            record.put("value", value);
+        }
+        record.put("loadedAt", entry.getLoadedAt());
+        record.put("loadTime", entry.getLoadTime());
+        record.put("staleAt", entry.getStaleAt());
+        record.put("expireAt", entry.getExpireAt());
+
+        ByteBuf out = ByteBufAllocator.DEFAULT.buffer(32);
+        try {
+            // Direct encoder: writes straight into the ByteBuf, no intermediate buffer to flush
+            BinaryEncoder binaryEncoder = EncoderFactory.get().directBinaryEncoder(new ByteBufOutputStream(out), null);
+            this.writer.write(record, binaryEncoder);
+            return out;
+        } catch (IOException | RuntimeException e) {
+            out.release();
+            throw e;
+        }
+    };
+
+    private final Decoder<Object> decoder = (buf, state) -> {
+        BinaryDecoder binaryDecoder = DecoderFactory.get().directBinaryDecoder(new ByteBufInputStream(buf), null);
+        GenericRecord record = this.reader.read(null, binaryDecoder);
+        GenericRecord value = (GenericRecord) record.get("value");
+        Product product = null;
+        if (value != null) {
+            Object description = value.get("description");
+            product = new Product((Integer) value.get("id"),
+                    description == null ? null : description.toString(), // Avro decodes strings as Utf8
+                    (Double) value.get("price"));
+        }
+        return new CacheEntry<>(product,
+                (Long) record.get("loadedAt"),
+                (Long) record.get("loadTime"),
+                (Long) record.get("staleAt"),
+                (Long) record.get("expireAt"));
+    };
+
+    @Override
+    public Decoder<Object> getValueDecoder() {
+        return this.decoder;
+    }
+
+    @Override
+    public Encoder getValueEncoder() {
+        return this.encoder;
+    }
+
+    @Override
+    public Decoder<Object> getMapKeyDecoder() {
+        return IntegerCodec.INSTANCE.getValueDecoder();
+    }
+
+    @Override
+    public Encoder getMapKeyEncoder() {
+        return IntegerCodec.INSTANCE.getValueEncoder();
+    }
+
+}
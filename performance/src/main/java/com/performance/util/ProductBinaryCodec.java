@@ -0,0 +1,138 @@
+package com.performance.util;
+
+import com.example.templates.CacheEntry;
+import com.performance.model.Product;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import org.redisson.client.codec.BaseCodec;
+import org.redisson.client.codec.IntegerCodec;
+import org.redisson.client.protocol.Decoder;
+import org.redisson.client.protocol.Encoder;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Hand-written binary layout of a CacheEntry<Product>, no reflection and no field names on the wire:
+ *
+ *  byte     flags: 1 = value, 2 = id, 4 = description, 8 = expiring
+ *  varlong  loadedAt
+ *  varlong  loadTime
+ *  varlong  staleAt - loadedAt, expireAt - loadedAt   (only when expiring, else both are Long.MAX_VALUE)
+ *  varint   id                                        (only with value and id)
+ *  varint   length, UTF-8 bytes of description         (only with value and description)
+ *  double   price                                     (only with value)
+ *
+ * A product like {id: 42, description: "product 42", price: 63.0} takes ~30 bytes instead of ~130 as JSON.
+ * Hash fields (the product ids) are plain decimal strings, see IntegerCodec.
+ */
+public class ProductBinaryCodec extends BaseCodec {
+
+    private static final int VALUE = 1;
+    private static final int ID = 2;
+    private static final int DESCRIPTION = 4;
+    private static final int EXPIRING = 8;
+
+    @SuppressWarnings("unchecked")
+    private final Encoder encoder = in -> {
+        CacheEntry<Product> entry = (CacheEntry<Product>) in;
+        Product product = entry.getValue();
+        boolean expiring = entry.getStaleAt() != Long.MAX_VALUE || entry.getExpireAt() != Long.MAX_VALUE;
+        int flags = (product != null ? VALUE : 0)
+                | (product != null && product.getId() != null ? ID : 0)
+                | (product != null && product.getDescription() != null ? DESCRIPTION : 0)
+                | (expiring ? EXPIRING : 0);
+
+        ByteBuf out = ByteBufAllocator.DEFAULT.buffer(32);
+        try {
+            out.writeByte(flags);
+            writeVarLong(out, entry.getLoadedAt());
+            writeVarLong(out, entry.getLoadTime());
+            if (expiring) {
+                writeVarLong(out, entry.getStaleAt() - entry.getLoadedAt());
+                writeVarLong(out, entry.getExpireAt() - entry.getLoadedAt());
+            }
+            if ((flags & ID) != 0) {
+                writeVarLong(out, product.getId());
+            }
+            if ((flags & DESCRIPTION) != 0) {
+                byte[] description = product.getDescription().getBytes(StandardCharsets.UTF_8);
+                writeVarLong(out, description.length);
+                out.writeBytes(description);
+            }
+            if ((flags & VALUE) != 0) {
+                out.writeDouble(product.getPrice());
+            }
+            return out;
+        } catch (RuntimeException e) {
+            out.release();
+            throw e;
+        }
+    };
+
+    private final Decoder<Object> decoder = (buf, state) -> {
+        int flags = buf.readByte();
+        long loadedAt = readVarLong(buf);
+        long loadTime = readVarLong(buf);
+        long staleAt = Long.MAX_VALUE;
+        long expireAt = Long.MAX_VALUE;
+        if ((flags & EXPIRING) != 0) {
+            staleAt = loadedAt + readVarLong(buf);
+            expireAt = loadedAt + readVarLong(buf);
+        }
+        Product product = null;
+        if ((flags & VALUE) != 0) {
+            product = new Product();
+            if ((flags & ID) != 0) {
+                product.setId((int) readVarLong(buf));
+            }
+            if ((flags & DESCRIPTION) != 0) {
+                int length = (int) readVarLong(buf);
+                product.setDescription(buf.readCharSequence(length, StandardCharsets.UTF_8).toString());
+            }
+            product.setPrice(buf.readDouble());
+        }
+        return new CacheEntry<>(product, loadedAt, loadTime, staleAt, expireAt);
+    };
+
+    @Override
+    public Decoder<Object> getValueDecoder() {
+        return this.decoder;
+    }
+
+    @Override
+    public Encoder getValueEncoder() {
+        return this.encoder;
+    }
+
+    @Override
+    public Decoder<Object> getMapKeyDecoder() {
+        return IntegerCodec.INSTANCE.getValueDecoder();
+    }
+
+    @Override
+    public Encoder getMapKeyEncoder() {
+        return IntegerCodec.INSTANCE.getValueEncoder();
+    }
+
+    // 7 bits per byte, high bit set while more bytes follow
+    private static void writeVarLong(ByteBuf out, long value){
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readVarLong(ByteBuf in){
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalStateException("Malformed varlong");
+    }
+
+}
@@ -0,0 +1,92 @@
+package com.performance.util;
+
+import com.performance.model.Product;
+import org.springframework.core.io.Resource;
+import org.springframework.r2dbc.core.DatabaseClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Loads products into the products table in bounded chunks, instead of saveAll (one INSERT per row):
+ *
+ *  - Each chunk is a single INSERT ... SELECT FROM unnest($1, $2), the chunk's columns bound as two arrays.
+ *    The statement text is the same for every chunk (one prepared statement),
+ *    and the number of bind parameters does not grow with the chunk size.
+ *  - At most concurrency chunks are in flight, so memory is bounded by concurrency x chunkSize rows
+ *    whatever the number of products, and the source (generator or file) is read as the inserts progress.
+ */
+public class ProductBulkLoader {
+
+    private static final String INSERT =
+            "INSERT INTO products(description, price) SELECT * FROM unnest($1::text[], $2::float8[])";
+
+    private final DatabaseClient client;
+    private final int chunkSize;
+    private final int concurrency;
+
+    public ProductBulkLoader(DatabaseClient client, int chunkSize, int concurrency) {
+        this.client = client;
+        this.chunkSize = chunkSize;
+        this.concurrency = concurrency;
+    }
+
+    // Emits the number of inserted rows
+    public Mono<Long> load(Flux<Product> products){
+        return products
+                .buffer(this.chunkSize)
+                .flatMap(this::insert, this.concurrency)
+                .reduce(0L, Long::sum);
+    }
+
+    private Mono<Long> insert(List<Product> chunk){
+        String[] descriptions = new String[chunk.size()];
+        Double[] prices = new Double[chunk.size()];
+        for (int i = 0; i < chunk.size(); i++) {
+            descriptions[i] = chunk.get(i).getDescription();
+            prices[i] = chunk.get(i).getPrice();
+        }
+        return this.client.sql(INSERT)
+                .bind(0, descriptions)
+                .bind(1, prices)
+                .fetch()
+                .rowsUpdated();
+    }
+
+    // "product 1" ... "product <rows>", random price between 1 and 100
+    public static Flux<Product> generate(int rows){
+        return Flux.range(1, rows)
+                .map(i -> new Product(null, "product " + i, ThreadLocalRandom.current().nextInt(1, 100)));
+    }
+
+    // "description,price" lines, the description may contain commas (split on the last one)
+    public static Flux<Product> csv(Resource resource){
+        return Flux.using(
+                        () -> new BufferedReader(new InputStreamReader(resource.getInputStream(), StandardCharsets.UTF_8)),
+                        reader -> Flux.fromStream(reader.lines()),
+                        reader -> {
+                            try {
+                                reader.close();
+                            } catch (Exception ignored) {
+                            }
+                        })
+                .filter(line -> !line.isBlank() && !line.startsWith("#") && !line.equalsIgnoreCase("description,price"))
+                .map(line -> {
+                    int comma = line.lastIndexOf(',');
+                    if (comma < 0) {
+                        throw new IllegalArgumentException("Invalid product line: " + line);
+                    }
+                    return new Product(null, line.substring(0, comma).trim(),
+                            Double.parseDouble(line.substring(comma + 1).trim()));
+                })
+                // Blocking file reads
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+}
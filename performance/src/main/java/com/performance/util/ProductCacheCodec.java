@@ -0,0 +1,71 @@
+package com.performance.util;
+
+import com.example.templates.CacheEntry;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.performance.model.Product;
+import org.redisson.client.codec.BaseCodec;
+import org.redisson.client.codec.Codec;
+import org.redisson.client.protocol.Decoder;
+import org.redisson.client.protocol.Encoder;
+import org.redisson.codec.TypedJsonJacksonCodec;
+
+/**
+ * Storage format of the product cache (product.cache.codec):
+ *  - JSON:   TypedJsonJacksonCodec, readable with redis-cli, the largest and slowest.
+ *  - BINARY: ProductBinaryCodec, hand-written layout, the smallest and fastest.
+ *  - AVRO:   ProductAvroCodec, schema-based, close to BINARY and tolerant to schema changes.
+ *
+ * Each format has its own hash, switching the codec starts from an empty cache
+ * instead of failing to decode the entries written with the previous one.
+ */
+public enum ProductCacheCodec {
+
+    JSON("product") {
+        @Override
+        public Codec codec() {
+            return new TypedJsonJacksonCodec(new TypeReference<Integer>() {},
+                    new TypeReference<CacheEntry<Product>>() {});
+        }
+    },
+    BINARY("product:binary") {
+        @Override
+        public Codec codec() {
+            return new ProductBinaryCodec();
+        }
+    },
+    AVRO("product:avro") {
+        @Override
+        public Codec codec() {
+            return new ProductAvroCodec();
+        }
+    };
+
+    private final String mapName;
+
+    ProductCacheCodec(String mapName) {
+        this.mapName = mapName;
+    }
+
+    public String getMapName() {
+        return this.mapName;
+    }
+
+    public abstract Codec codec();
+
+    // Codec of per-entry keys (plain values): the entries are encoded as the map values of codec()
+    public Codec valueCodec() {
+        Codec codec = codec();
+        return new BaseCodec() {
+            @Override
+            public Decoder<Object> getValueDecoder() {
+                return codec.getMapValueDecoder();
+            }
+
+            @Override
+            public Encoder getValueEncoder() {
+                return codec.getMapValueEncoder();
+            }
+        };
+    }
+
+}
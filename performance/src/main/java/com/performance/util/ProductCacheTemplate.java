@@ -1,40 +1,113 @@
 package com.performance.util;
 
+import com.example.templates.BatchLoader;
+import com.example.templates.CacheEntry;
 import com.example.templates.CacheTemplate;
+import com.performance.config.ProductCacheProperties;
 import com.performance.model.Product;
 import com.performance.repository.ProductRepository;
-import org.redisson.api.RMapReactive;
 import org.redisson.api.RedissonReactiveClient;
-import org.redisson.codec.TypedJsonJacksonCodec;
-import org.springframework.stereotype.Service;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+import org.springframework.r2dbc.core.DatabaseClient;
 import reactor.core.publisher.Mono;
 
-@Service
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.StringJoiner;
+
+/**
+ * Each field of the `product` hash holds a CacheEntry: the Product and its load/expiry metadata,
+ * encoded with the configured ProductCacheCodec (JSON by default).
+ *
+ * The hash is a Redis 7.4+ native map cache (HPEXPIRE per field):
+ *  - reads are plain HGET/HMGET,
+ *  - when a hard TTL is set (setExpiration), every write sets it on the field, Redis evicts it.
+ *
+ * The entries can also be spread over shard hashes or per-product keys, and moved online
+ * from a previous key layout (product.cache.sharding, see ProductEntryStore).
+ *
+ * Redis errors are not swallowed here, CacheTemplate falls back to the source
+ * and feeds them to the cache circuit breaker.
+ *
+ * With batching (product.cache.batching.enabled), concurrent single-key reads are collapsed (BatchLoader):
+ * the HGETs of a window become one HMGET, and the findById of the misses one findAllById,
+ * so Redis commands and connections stop growing with the number of concurrent requests.
+ *
+ * Created by ProductCacheConfig, only with the map layout (product.cache.layout).
+ */
 public class ProductCacheTemplate extends CacheTemplate<Integer, Product> {
 
     private final ProductRepository repository;
 
-    private final RMapReactive<Integer, Product> mapCache;
+    // Low-level reactive database API for the multi-row statements
+    private final DatabaseClient databaseClient;
+
+    private final ProductEntryStore store;
+
+    // Only with batching
+    private final BatchLoader<Integer, CacheEntry<Product>> cacheLoader;
+    private final BatchLoader<Integer, Product> sourceLoader;
 
     public ProductCacheTemplate(ProductRepository repository,
-                                RedissonReactiveClient client) {
+                                R2dbcEntityTemplate entityTemplate,
+                                RedissonReactiveClient client,
+                                ProductCacheProperties properties) {
         this.repository = repository;
-        this.mapCache = client.getMap("product",
-                new TypedJsonJacksonCodec(Integer.class, Product.class));
+        this.databaseClient = entityTemplate.getDatabaseClient();
+        ProductCacheCodec codec = properties.getCodec();
+        ProductCacheProperties.Sharding sharding = properties.getSharding();
+        checkMigration(sharding);
+        ProductEntryStore primary = ProductEntryStore.create(client, codec, sharding.getKeyLayout(), sharding.getShardCount());
+        this.store = sharding.getMigrateFrom() != null ?
+                new ProductEntryStore.DualRead(primary, ProductEntryStore.create(client, codec,
+                        sharding.getMigrateFrom(), sharding.getMigrateFromShardCount())) :
+                primary;
+        ProductCacheProperties.Batching batching = properties.getBatching();
+        if (batching.isEnabled()) {
+            this.cacheLoader = new BatchLoader<>(this.store::getAll, batching.getWindow(), batching.getMaxBatchSize());
+            this.sourceLoader = new BatchLoader<>(this::getAllFromSource, batching.getWindow(), batching.getMaxBatchSize());
+        } else {
+            this.cacheLoader = null;
+            this.sourceLoader = null;
+        }
+    }
+
+    // Adds the batch sizes: requests / batches is the average number of callers per Redis (or source) call
+    @Override
+    public Map<String, Number> getStats() {
+        Map<String, Number> stats = super.getStats();
+        if (this.cacheLoader != null) {
+            this.cacheLoader.getStats().forEach((name, value) -> stats.put("batch.cache." + name, value));
+            this.sourceLoader.getStats().forEach((name, value) -> stats.put("batch.source." + name, value));
+        }
+        return stats;
     }
 
     @Override
     protected Mono<Product> insertSource(Product product) {
-        return Mono.empty();
+        return this.repository.save(product);
     }
 
+    // Write-through, also replaces a tombstone cached for the new id
     @Override
     protected Mono<Product> insertCache(Product product) {
-        return Mono.empty();
+        return updateCache(product.getId(), product);
+    }
+
+    @Override
+    protected Integer keyOf(Product product) {
+        return product.getId();
     }
 
     @Override
     protected Mono<Product> getFromSource(Integer id) {
+        if (this.sourceLoader != null) {
+            return this.sourceLoader.load(id);
+        }
         return this.repository.findById(id)
 //                .delaySubscription(Duration.ofMillis(30))
                 ;
@@ -42,8 +115,48 @@ public class ProductCacheTemplate extends CacheTemplate<Integer, Product> {
 
     @Override
     protected Mono<Product> getFromCache(Integer id) {
-        return this.mapCache.get(id)
-                .onErrorResume(e -> Mono.empty()); // Ignore Redis errors
+        return getEntryFromCache(id)
+                .mapNotNull(CacheEntry::getValue);
+    }
+
+    @Override
+    protected Mono<CacheEntry<Product>> getEntryFromCache(Integer id) {
+        if (this.cacheLoader != null) {
+            return this.cacheLoader.load(id);
+        }
+        return this.store.get(id);
+    }
+
+    // One HMGET per hash (one MGET with per-entry keys) for all the ids, tombstones are returned with a null value
+    @Override
+    protected Mono<Map<Integer, Product>> getAllFromCache(Set<Integer> ids) {
+        return this.store.getAll(ids)
+                .map(entries -> {
+                    long now = System.currentTimeMillis();
+                    Map<Integer, Product> products = new HashMap<>();
+                    entries.forEach((id, entry) -> {
+                        if (!entry.isExpired(now)) {
+                            products.put(id, entry.getValue());
+                        }
+                    });
+                    return products;
+                });
+    }
+
+    // One SELECT ... WHERE id IN (...) for all the misses
+    @Override
+    protected Mono<Map<Integer, Product>> getAllFromSource(Set<Integer> ids) {
+        return this.repository.findAllById(ids)
+                .collectMap(Product::getId);
+    }
+
+    // One HSET per hash (one batch with per-entry keys) with all the loaded products
+    @Override
+    protected Mono<Map<Integer, Product>> updateAllCache(Map<Integer, Product> products) {
+        Map<Integer, CacheEntry<Product>> entries = new HashMap<>();
+        products.forEach((id, product) -> entries.put(id, newEntry(product, 0)));
+        return this.store.putAll(entries, isExpiring() ? getHardTtl() : null)
+                .thenReturn(products);
     }
 
     @Override
@@ -51,11 +164,58 @@ public class ProductCacheTemplate extends CacheTemplate<Integer, Product> {
         return this.repository.save(product);
     }
 
+    /**
+     * One multi-row UPDATE for the whole write-behind batch:
+     *
+     *  UPDATE products SET description = v.description, price = v.price
+     *  FROM (VALUES (:id0, :description0, :price0), (:id1, ...)) AS v(id, description, price)
+     *  WHERE products.id = v.id
+     *
+     * Ids deleted in the meantime match no row and are skipped.
+     */
+    @Override
+    protected Mono<Void> updateAllSource(Map<Integer, Product> products) {
+        // VALUES needs at least one row
+        if (products.isEmpty()) {
+            return Mono.empty();
+        }
+        List<Map.Entry<Integer, Product>> rows = new ArrayList<>(products.entrySet());
+        StringJoiner values = new StringJoiner(", ");
+        for (int i = 0; i < rows.size(); i++) {
+            values.add("(:id" + i + ", :description" + i + ", :price" + i + ")");
+        }
+        DatabaseClient.GenericExecuteSpec spec = this.databaseClient.sql(
+                "UPDATE products SET description = v.description, price = v.price" +
+                " FROM (VALUES " + values + ") AS v(id, description, price)" +
+                " WHERE products.id = v.id");
+        for (int i = 0; i < rows.size(); i++) {
+            Product product = rows.get(i).getValue();
+            spec = spec.bind("id" + i, rows.get(i).getKey())
+                    .bind("price" + i, product.getPrice());
+            spec = product.getDescription() == null ?
+                    spec.bindNull("description" + i, String.class) :
+                    spec.bind("description" + i, product.getDescription());
+        }
+        return spec.then();
+    }
+
     @Override
     protected Mono<Product> updateCache(Integer id, Product product) {
-        return this.mapCache.fastPut(id, product)
-                .onErrorResume(e -> Mono.empty())
-                .thenReturn(product);
+        return updateEntryCache(id, newEntry(product, 0));
+    }
+
+    @Override
+    protected Mono<Product> updateEntryCache(Integer id, CacheEntry<Product> entry) {
+        return this.store.put(id, entry, isExpiring() ? getHardTtl() : null)
+                .thenReturn(entry.getValue());
+    }
+
+    // The tombstone field expires on its own, independently of the hard TTL
+    @Override
+    protected Mono<Void> updateTombstoneCache(Integer id, CacheEntry<Product> tombstone) {
+        long ttl = Math.max(1, tombstone.getExpireAt() - System.currentTimeMillis());
+        return this.store.put(id, tombstone, Duration.ofMillis(ttl))
+                .then();
     }
 
     @Override
@@ -68,12 +228,32 @@ public class ProductCacheTemplate extends CacheTemplate<Integer, Product> {
 
     @Override
     protected Mono<Boolean> deleteFromCache(Integer id) {
-        return this.mapCache.fastRemove(id)
-                .onErrorResume(ex -> Mono.just(0L)) // Ignore Redis errors
-                .flatMap(result ->
-                        result > 0 ? Mono.just(true) :
-                                Mono.just(false));
-
+        return this.store.remove(id);
     }
 
+    /**
+     * DualRead deletes the legacy copy after every write to the primary layout:
+     * if both layouts share a Redis key, that delete removes the value just written.
+     * This is the case for the same layout and shard count (SINGLE is SHARDED with one shard),
+     * and for two SHARDED layouts, whose <map>:shard:<n> keys overlap.
+     */
+    private static void checkMigration(ProductCacheProperties.Sharding sharding){
+        ProductEntryStore.KeyLayout from = sharding.getMigrateFrom();
+        if (from == null) {
+            return;
+        }
+        ProductEntryStore.KeyLayout to = sharding.getKeyLayout();
+        boolean overlap;
+        if (from == ProductEntryStore.KeyLayout.ENTRY || to == ProductEntryStore.KeyLayout.ENTRY) {
+            overlap = from == to;
+        } else {
+            int fromShards = from == ProductEntryStore.KeyLayout.SINGLE ? 1 : sharding.getMigrateFromShardCount();
+            int toShards = to == ProductEntryStore.KeyLayout.SINGLE ? 1 : sharding.getShardCount();
+            overlap = fromShards == toShards || (fromShards > 1 && toShards > 1);
+        }
+        if (overlap) {
+            throw new IllegalStateException("product.cache.sharding.migrate-from " + from + " (" + sharding.getMigrateFromShardCount()
+                    + " shards) shares keys with key-layout " + to + " (" + sharding.getShardCount() + " shards), unset migrate-from");
+        }
+    }
 }
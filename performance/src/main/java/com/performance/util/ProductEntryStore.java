@@ -0,0 +1,279 @@
+package com.performance.util;
+
+import com.example.templates.CacheEntry;
+import com.performance.model.Product;
+import org.redisson.api.BatchOptions;
+import org.redisson.api.RBatchReactive;
+import org.redisson.api.RBucketReactive;
+import org.redisson.api.RMapCacheNativeReactive;
+import org.redisson.api.RedissonReactiveClient;
+import org.redisson.client.codec.Codec;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Redis keys holding the cached products of the MAP layout (product.cache.sharding.key-layout):
+ *
+ *  - SINGLE:  one hash, <map> (e.g. product), a field per product. The original layout,
+ *             a single hot key that Redis Cluster cannot split.
+ *  - SHARDED: shardCount hashes, <map>:shard:<n> with n = id mod shardCount,
+ *             spread over the cluster slots, each a small hash.
+ *  - ENTRY:   one string key per product, <map>:entry:<id>, the TTL is the key TTL.
+ *
+ * Bulk operations send one command per hash (SINGLE, SHARDED) or one batch of commands (ENTRY).
+ * A ttl of null means no expiration.
+ *
+ * DualRead moves the products from a previous layout (migrate-from) to the current one without downtime,
+ * see DualRead.
+ */
+public interface ProductEntryStore {
+
+    Mono<CacheEntry<Product>> get(Integer id);
+
+    // Missing ids are absent from the result
+    Mono<Map<Integer, CacheEntry<Product>>> getAll(Set<Integer> ids);
+
+    Mono<Void> put(Integer id, CacheEntry<Product> entry, Duration ttl);
+
+    Mono<Void> putAll(Map<Integer, CacheEntry<Product>> entries, Duration ttl);
+
+    // False when the id is already cached, the cached entry is kept
+    Mono<Boolean> putIfAbsent(Integer id, CacheEntry<Product> entry, Duration ttl);
+
+    Mono<Boolean> remove(Integer id);
+
+    enum KeyLayout {
+        SINGLE,
+        SHARDED,
+        ENTRY
+    }
+
+    static ProductEntryStore create(RedissonReactiveClient client, ProductCacheCodec codec,
+                                    KeyLayout layout, int shardCount){
+        return switch (layout) {
+            case SINGLE -> new Sharded(client, codec, 1);
+            case SHARDED -> new Sharded(client, codec, shardCount);
+            case ENTRY -> new Entry(client, codec);
+        };
+    }
+
+    // SINGLE is one shard named after the codec's map
+    class Sharded implements ProductEntryStore {
+
+        private final RMapCacheNativeReactive<Integer, CacheEntry<Product>>[] shards;
+
+        @SuppressWarnings("unchecked")
+        public Sharded(RedissonReactiveClient client, ProductCacheCodec codec, int shardCount) {
+            this.shards = new RMapCacheNativeReactive[shardCount];
+            for (int i = 0; i < shardCount; i++) {
+                String name = shardCount == 1 ? codec.getMapName() : codec.getMapName() + ":shard:" + i;
+                this.shards[i] = client.getMapCacheNative(name, codec.codec());
+            }
+        }
+
+        private RMapCacheNativeReactive<Integer, CacheEntry<Product>> shard(Integer id){
+            return this.shards[Math.floorMod(id, this.shards.length)];
+        }
+
+        @Override
+        public Mono<CacheEntry<Product>> get(Integer id) {
+            return shard(id).get(id);
+        }
+
+        // One HMGET per shard holding some of the ids
+        @Override
+        public Mono<Map<Integer, CacheEntry<Product>>> getAll(Set<Integer> ids) {
+            if (this.shards.length == 1) {
+                return this.shards[0].getAll(ids);
+            }
+            Map<Integer, Set<Integer>> byShard = new HashMap<>();
+            ids.forEach(id -> byShard.computeIfAbsent(Math.floorMod(id, this.shards.length), s -> new LinkedHashSet<>()).add(id));
+            return Flux.fromIterable(byShard.entrySet())
+                    .flatMap(e -> this.shards[e.getKey()].getAll(e.getValue()))
+                    .collect(HashMap::new, Map::putAll);
+        }
+
+        @Override
+        public Mono<Void> put(Integer id, CacheEntry<Product> entry, Duration ttl) {
+            return (ttl == null ? shard(id).fastPut(id, entry) : shard(id).fastPut(id, entry, ttl))
+                    .then();
+        }
+
+        @Override
+        public Mono<Void> putAll(Map<Integer, CacheEntry<Product>> entries, Duration ttl) {
+            Map<Integer, Map<Integer, CacheEntry<Product>>> byShard = new HashMap<>();
+            entries.forEach((id, entry) -> byShard.computeIfAbsent(Math.floorMod(id, this.shards.length), s -> new HashMap<>()).put(id, entry));
+            return Flux.fromIterable(byShard.entrySet())
+                    .flatMap(e -> ttl == null ?
+                            this.shards[e.getKey()].putAll(e.getValue()) :
+                            this.shards[e.getKey()].putAll(e.getValue(), ttl))
+                    .then();
+        }
+
+        // HSETNX
+        @Override
+        public Mono<Boolean> putIfAbsent(Integer id, CacheEntry<Product> entry, Duration ttl) {
+            return ttl == null ? shard(id).fastPutIfAbsent(id, entry) : shard(id).fastPutIfAbsent(id, entry, ttl);
+        }
+
+        @Override
+        public Mono<Boolean> remove(Integer id) {
+            return shard(id).fastRemove(id)
+                    .map(removed -> removed > 0);
+        }
+    }
+
+    class Entry implements ProductEntryStore {
+
+        private final RedissonReactiveClient client;
+        private final String prefix;
+        private final Codec codec;
+
+        public Entry(RedissonReactiveClient client, ProductCacheCodec codec) {
+            this.client = client;
+            this.prefix = codec.getMapName() + ":entry:";
+            this.codec = codec.valueCodec();
+        }
+
+        private RBucketReactive<CacheEntry<Product>> bucket(Integer id){
+            return this.client.getBucket(this.prefix + id, this.codec);
+        }
+
+        @Override
+        public Mono<CacheEntry<Product>> get(Integer id) {
+            return bucket(id).get();
+        }
+
+        // One MGET
+        @Override
+        public Mono<Map<Integer, CacheEntry<Product>>> getAll(Set<Integer> ids) {
+            String[] keys = ids.stream().map(id -> this.prefix + id).toArray(String[]::new);
+            return this.client.getBuckets(this.codec).<CacheEntry<Product>>get(keys)
+                    .map(found -> {
+                        Map<Integer, CacheEntry<Product>> entries = new HashMap<>();
+                        found.forEach((key, entry) -> entries.put(Integer.valueOf(key.substring(this.prefix.length())), entry));
+                        return entries;
+                    });
+        }
+
+        @Override
+        public Mono<Void> put(Integer id, CacheEntry<Product> entry, Duration ttl) {
+            return ttl == null ? bucket(id).set(entry) : bucket(id).set(entry, ttl);
+        }
+
+        // One batch of SET (PX) commands
+        @Override
+        public Mono<Void> putAll(Map<Integer, CacheEntry<Product>> entries, Duration ttl) {
+            RBatchReactive batch = this.client.createBatch(BatchOptions.defaults());
+            entries.forEach((id, entry) -> {
+                RBucketReactive<CacheEntry<Product>> bucket = batch.getBucket(this.prefix + id, this.codec);
+                if (ttl == null) {
+                    bucket.set(entry);
+                } else {
+                    bucket.set(entry, ttl);
+                }
+            });
+            return batch.execute().then();
+        }
+
+        // SET NX (PX)
+        @Override
+        public Mono<Boolean> putIfAbsent(Integer id, CacheEntry<Product> entry, Duration ttl) {
+            return ttl == null ? bucket(id).setIfAbsent(entry) : bucket(id).setIfAbsent(entry, ttl);
+        }
+
+        @Override
+        public Mono<Boolean> remove(Integer id) {
+            return bucket(id).delete();
+        }
+    }
+
+    /**
+     * Online migration from a previous key layout (legacy) to the current one (primary):
+     *  - Reads go to the primary, a miss is read from the legacy layout and, if found,
+     *    moved to the primary (with its remaining TTL) and deleted from the legacy layout.
+     *    The copy is put-if-absent: a write that reached the primary between the miss and the copy
+     *    is kept, and the primary value is served instead of the legacy one.
+     *  - Writes and deletes go to the primary and delete the legacy copy,
+     *    so an outdated legacy entry is never read back after the primary one expires.
+     * Once the legacy keys are gone (moved, expired or removed), migrate-from can be unset.
+     */
+    class DualRead implements ProductEntryStore {
+
+        private final ProductEntryStore primary;
+        private final ProductEntryStore legacy;
+
+        public DualRead(ProductEntryStore primary, ProductEntryStore legacy) {
+            this.primary = primary;
+            this.legacy = legacy;
+        }
+
+        @Override
+        public Mono<CacheEntry<Product>> get(Integer id) {
+            return this.primary.get(id)
+                    .switchIfEmpty(Mono.defer(() -> this.legacy.get(id)
+                            .flatMap(entry -> move(id, entry))));
+        }
+
+        @Override
+        public Mono<Map<Integer, CacheEntry<Product>>> getAll(Set<Integer> ids) {
+            return this.primary.getAll(ids)
+                    .flatMap(found -> {
+                        Set<Integer> missing = new LinkedHashSet<>(ids);
+                        missing.removeAll(found.keySet());
+                        if (missing.isEmpty()) {
+                            return Mono.just(found);
+                        }
+                        return this.legacy.getAll(missing)
+                                .flatMapMany(legacyFound -> Flux.fromIterable(legacyFound.entrySet()))
+                                .flatMap(e -> move(e.getKey(), e.getValue()).map(entry -> Map.entry(e.getKey(), entry)))
+                                .collect(() -> new HashMap<>(found), (all, e) -> all.put(e.getKey(), e.getValue()));
+                    });
+        }
+
+        @Override
+        public Mono<Void> put(Integer id, CacheEntry<Product> entry, Duration ttl) {
+            return this.primary.put(id, entry, ttl)
+                    .then(this.legacy.remove(id))
+                    .then();
+        }
+
+        @Override
+        public Mono<Void> putAll(Map<Integer, CacheEntry<Product>> entries, Duration ttl) {
+            return this.primary.putAll(entries, ttl)
+                    .thenMany(Flux.fromIterable(entries.keySet()).flatMap(this.legacy::remove))
+                    .then();
+        }
+
+        @Override
+        public Mono<Boolean> remove(Integer id) {
+            return Mono.zip(this.primary.remove(id), this.legacy.remove(id), Boolean::logicalOr);
+        }
+
+        /**
+         * Copies with the remaining TTL unless the primary already has the id, then deletes the legacy copy.
+         * Returns the entry to serve: the legacy one when copied, the primary one otherwise.
+         * Best effort, the legacy entry is served when the copy fails.
+         */
+        private Mono<CacheEntry<Product>> move(Integer id, CacheEntry<Product> entry){
+            long now = System.currentTimeMillis();
+            if (entry.isExpired(now)) {
+                return Mono.just(entry);
+            }
+            Duration ttl = entry.getExpireAt() == Long.MAX_VALUE ? null : Duration.ofMillis(entry.getExpireAt() - now);
+            return this.primary.putIfAbsent(id, entry, ttl)
+                    .flatMap(copied -> copied ?
+                            Mono.just(entry) :
+                            this.primary.get(id).defaultIfEmpty(entry))
+                    .flatMap(served -> this.legacy.remove(id).thenReturn(served))
+                    .onErrorResume(e -> Mono.just(entry));
+        }
+    }
+
+}
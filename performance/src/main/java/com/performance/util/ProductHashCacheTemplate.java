@@ -0,0 +1,210 @@
+package com.performance.util;
+
+import com.example.templates.CacheEntry;
+import com.performance.config.ProductCacheProperties;
+import com.performance.model.Product;
+import com.performance.repository.ProductRepository;
+import org.redisson.api.BatchOptions;
+import org.redisson.api.BatchResult;
+import org.redisson.api.RBatchReactive;
+import org.redisson.api.RMapReactive;
+import org.redisson.api.RedissonReactiveClient;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+import org.springframework.r2dbc.core.DatabaseClient;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Field-level layout (product.cache.layout: hash), one Redis hash per product:
+ *
+ *  product:hash:42 → description: "product 42"
+ *                    price:       "63.0"
+ *                    meta:        "loadedAt,loadTime,staleAt,expireAt"
+ *
+ *  - A tombstone is a hash with only `meta` (no price).
+ *  - The hard TTL is the key TTL (PEXPIRE), written in the same MULTI as the fields.
+ *  - updatePrice() changes one column in Postgres and one field in Redis (HSET only if the field exists).
+ *  - getPrice() reads two fields (HMGET price meta), no deserialization of the whole product.
+ *    It is a get() projection (getProjected): counted in the hit/miss stats, refreshed on the soft TTL.
+ *  - Both go through cacheCall like the inherited operations: a cache error or an open breaker
+ *    falls back to the source instead of failing the request.
+ *
+ * The source side (repository, multi-row statements) is ProductCacheTemplate's, only the cache side differs.
+ * Created by ProductCacheConfig in place of ProductCacheTemplate with the hash layout.
+ */
+public class ProductHashCacheTemplate extends ProductCacheTemplate {
+
+    private static final String DESCRIPTION = "description";
+    private static final String PRICE = "price";
+    private static final String META = "meta";
+
+    private final RedissonReactiveClient client;
+    private final DatabaseClient databaseClient;
+
+    public ProductHashCacheTemplate(ProductRepository repository,
+                                    R2dbcEntityTemplate entityTemplate,
+                                    RedissonReactiveClient client,
+                                    ProductCacheProperties properties) {
+        super(repository, entityTemplate, client, properties);
+        this.client = client;
+        this.databaseClient = entityTemplate.getDatabaseClient();
+    }
+
+    /**
+     * Price-only update: UPDATE of the price column, then HSET of the price field if the product is cached.
+     * An uncached product stays uncached. A skipped or failed cache write goes through cacheWrite:
+     * the hash is deleted as soon as the cache is reachable again, the old price is never served after that.
+     * Emits false when the product does not exist.
+     */
+    public Mono<Boolean> updatePrice(Integer id, double price){
+        return this.databaseClient.sql("UPDATE products SET price = :price WHERE id = :id")
+                .bind("price", price)
+                .bind("id", id)
+                .fetch()
+                .rowsUpdated()
+                .flatMap(rows -> rows == 0 ? Mono.just(false) :
+                        cacheWrite(id, () -> hash(id).fastReplace(PRICE, Double.toString(price)), false)
+                                .thenReturn(true));
+    }
+
+    // Projection read: price and meta only, loads (and caches) the whole product on miss
+    public Mono<Double> getPrice(Integer id){
+        return getProjected(id,
+                () -> hash(id).getAll(Set.of(PRICE, META))
+                        .mapNotNull(fields -> fields.isEmpty() ? null : toPriceEntry(fields)),
+                Product::getPrice);
+    }
+
+    @Override
+    protected Mono<CacheEntry<Product>> getEntryFromCache(Integer id) {
+        return hash(id).readAllMap()
+                .mapNotNull(fields -> fields.isEmpty() ? null : toEntry(id, fields));
+    }
+
+    // One pipeline of HGETALL for all the ids, tombstones are returned with a null value
+    @Override
+    protected Mono<Map<Integer, Product>> getAllFromCache(Set<Integer> ids) {
+        List<Integer> keys = new ArrayList<>(ids);
+        RBatchReactive batch = this.client.createBatch(BatchOptions.defaults());
+        keys.forEach(id -> batch.getMap(key(id), StringCodec.INSTANCE).readAllMap());
+        return batch.execute()
+                .map(BatchResult::getResponses)
+                .map(responses -> {
+                    long now = System.currentTimeMillis();
+                    Map<Integer, Product> products = new HashMap<>();
+                    for (int i = 0; i < keys.size(); i++) {
+                        @SuppressWarnings("unchecked")
+                        Map<String, String> fields = (Map<String, String>) responses.get(i);
+                        if (fields != null && !fields.isEmpty()) {
+                            CacheEntry<Product> entry = toEntry(keys.get(i), fields);
+                            if (!entry.isExpired(now)) {
+                                products.put(keys.get(i), entry.getValue());
+                            }
+                        }
+                    }
+                    return products;
+                });
+    }
+
+    // One MULTI with all the loaded products
+    @Override
+    protected Mono<Map<Integer, Product>> updateAllCache(Map<Integer, Product> products) {
+        RBatchReactive batch = atomicBatch();
+        products.forEach((id, product) -> write(batch, id, newEntry(product, 0), getHardTtl()));
+        return batch.execute()
+                .thenReturn(products);
+    }
+
+    @Override
+    protected Mono<Product> updateEntryCache(Integer id, CacheEntry<Product> entry) {
+        RBatchReactive batch = atomicBatch();
+        write(batch, id, entry, getHardTtl());
+        return batch.execute()
+                .thenReturn(entry.getValue());
+    }
+
+    @Override
+    protected Mono<Void> updateTombstoneCache(Integer id, CacheEntry<Product> tombstone) {
+        RBatchReactive batch = atomicBatch();
+        write(batch, id, tombstone, Duration.ofMillis(Math.max(1, tombstone.getExpireAt() - System.currentTimeMillis())));
+        return batch.execute()
+                .then();
+    }
+
+    @Override
+    protected Mono<Boolean> deleteFromCache(Integer id) {
+        return hash(id).delete();
+    }
+
+    private RMapReactive<String, String> hash(Integer id){
+        return this.client.getMap(key(id), StringCodec.INSTANCE);
+    }
+
+    private static String key(Integer id){
+        return "product:hash:" + id;
+    }
+
+    // MULTI/EXEC: readers never see a half-written product
+    private RBatchReactive atomicBatch(){
+        return this.client.createBatch(BatchOptions.defaults()
+                .executionMode(BatchOptions.ExecutionMode.IN_REDIS_ATOMIC));
+    }
+
+    // Replaces the whole hash: fields dropped since the last write (e.g. a null description) must not linger
+    private static void write(RBatchReactive batch, Integer id, CacheEntry<Product> entry, Duration ttl){
+        RMapReactive<String, String> hash = batch.getMap(key(id), StringCodec.INSTANCE);
+        hash.delete();
+        hash.putAll(toFields(entry));
+        if (ttl != null) {
+            hash.expire(ttl);
+        }
+    }
+
+    private static Map<String, String> toFields(CacheEntry<Product> entry){
+        Map<String, String> fields = new LinkedHashMap<>();
+        Product product = entry.getValue();
+        if (product != null) {
+            if (product.getDescription() != null) {
+                fields.put(DESCRIPTION, product.getDescription());
+            }
+            fields.put(PRICE, Double.toString(product.getPrice()));
+        }
+        fields.put(META, entry.getLoadedAt() + "," + entry.getLoadTime() + ","
+                + entry.getStaleAt() + "," + entry.getExpireAt());
+        return fields;
+    }
+
+    private static CacheEntry<Product> toEntry(Integer id, Map<String, String> fields){
+        String price = fields.get(PRICE);
+        Product product = price == null ? null :
+                new Product(id, fields.get(DESCRIPTION), Double.parseDouble(price));
+        return toEntry(product, fields.get(META));
+    }
+
+    private static CacheEntry<Double> toPriceEntry(Map<String, String> fields){
+        String price = fields.get(PRICE);
+        return toEntry(price == null ? null : Double.valueOf(price), fields.get(META));
+    }
+
+    // A null value is a tombstone
+    private static <T> CacheEntry<T> toEntry(T value, String meta){
+        if (meta == null) {
+            return CacheEntry.of(value);
+        }
+        String[] values = meta.split(",");
+        return new CacheEntry<>(value,
+                Long.parseLong(values[0]),
+                Long.parseLong(values[1]),
+                Long.parseLong(values[2]),
+                Long.parseLong(values[3]));
+    }
+
+}
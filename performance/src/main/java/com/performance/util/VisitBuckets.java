@@ -0,0 +1,153 @@
+package com.performance.util;
+
+import com.performance.config.ProductVisitProperties;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Names of the visit sorted sets a window of visits is added to, and that a ranking window reads:
+ *
+ *  - product:visit:yyyyMMdd            per day, kept (the "today" ranking)
+ *  - product:visit:m:yyyyMMddHHmm      per minute, expires after minuteRetention
+ *  - product:visit:h:yyyyMMddHH        per hour, expires after hourRetention
+ *
+ * The day keys used to be named with the week-based year (YYYY), one year off for the few days
+ * around New Year that fall in a week of the other year. They now use the calendar year:
+ * one-time key change for those days only, the counts an older version wrote under the old name are not read.
+ *
+ * A ranking window (5m, 1h, 24h ...) is the union of the buckets it covers, the current (partial) one included:
+ * minute buckets while the window fits in minuteRetention, hour buckets beyond.
+ *
+ * Unique visitors, per day, expire after the visitor retention:
+ *  - product:visitors:yyyyMMdd:<id>    HyperLogLog of the product's clients
+ *  - product:visitors:rank:yyyyMMdd    products by their unique visitor estimate
+ */
+@Component
+public class VisitBuckets {
+
+    public static final String TODAY = "today";
+
+    private static final DateTimeFormatter DAY = DateTimeFormatter.ofPattern("uuuuMMdd");
+    private static final DateTimeFormatter MINUTE = DateTimeFormatter.ofPattern("uuuuMMddHHmm");
+    private static final DateTimeFormatter HOUR = DateTimeFormatter.ofPattern("uuuuMMddHH");
+
+    private final Duration minuteRetention;
+    private final Duration hourRetention;
+    private final Duration visitorRetention;
+
+    public VisitBuckets(ProductVisitProperties properties) {
+        this.minuteRetention = properties.getBuckets().getMinuteRetention();
+        this.hourRetention = properties.getBuckets().getHourRetention();
+        this.visitorRetention = properties.getVisitors().getRetention();
+    }
+
+    @Data
+    @AllArgsConstructor
+    public static class Bucket {
+        private String name;
+        // null: never expires
+        private Duration ttl;
+    }
+
+    // The sets the visits counted at this time go to
+    public List<Bucket> bucketsAt(LocalDateTime time){
+        return List.of(
+                new Bucket(dayKey(time.toLocalDate()), null),
+                new Bucket("product:visit:m:" + MINUTE.format(time), this.minuteRetention),
+                new Bucket("product:visit:h:" + HOUR.format(time), this.hourRetention));
+    }
+
+    public static String dayKey(LocalDate date){
+        return "product:visit:" + DAY.format(date);
+    }
+
+    public static String visitorsKey(LocalDate date, int productId){
+        return "product:visitors:" + DAY.format(date) + ":" + productId;
+    }
+
+    public static String visitorsRankKey(LocalDate date){
+        return "product:visitors:rank:" + DAY.format(date);
+    }
+
+    // PFMERGE of the last `days` daily HyperLogLogs of a product, up to today
+    public static String visitorsRollupKey(int productId, int days, LocalDate today){
+        return "product:visitors:" + days + "d:" + DAY.format(today) + ":" + productId;
+    }
+
+    /**
+     * The last `days` days, today first.
+     * @throws IllegalArgumentException if days is not between 1 and the visitor retention
+     */
+    public List<LocalDate> visitorDays(int days, LocalDate today){
+        if (days < 1 || days > this.visitorRetention.toDays()) {
+            throw new IllegalArgumentException("Days must be between 1 and " + this.visitorRetention.toDays() + ": " + days);
+        }
+        List<LocalDate> dates = new ArrayList<>(days);
+        for (int i = 0; i < days; i++) {
+            dates.add(today.minusDays(i));
+        }
+        return dates;
+    }
+
+    /**
+     * The sets covering the window ending now, newest first.
+     * @throws IllegalArgumentException if the window is not "today" or a duration like 5m, 1h, 24h
+     *                                   or is longer than the hour bucket retention
+     */
+    public List<String> windowKeys(String window, LocalDateTime now){
+        if (TODAY.equals(window)) {
+            return List.of(dayKey(now.toLocalDate()));
+        }
+        Duration duration = parse(window);
+        List<String> keys = new ArrayList<>();
+        if (duration.compareTo(this.minuteRetention) <= 0) {
+            LocalDateTime minute = now.truncatedTo(ChronoUnit.MINUTES);
+            for (long i = 0; i < Math.max(1, duration.toMinutes()); i++) {
+                keys.add("product:visit:m:" + MINUTE.format(minute.minusMinutes(i)));
+            }
+        } else {
+            LocalDateTime hour = now.truncatedTo(ChronoUnit.HOURS);
+            long hours = (duration.toMinutes() + 59) / 60;
+            for (long i = 0; i < hours; i++) {
+                keys.add("product:visit:h:" + HOUR.format(hour.minusHours(i)));
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * 5m, 90m, 1h, 24h, 2d
+     * @throws IllegalArgumentException if the window is not a duration or is longer than the hour bucket retention
+     */
+    public Duration parse(String window){
+        if (window == null || window.length() < 2) {
+            throw new IllegalArgumentException("Invalid window: " + window);
+        }
+        long amount;
+        try {
+            amount = Long.parseLong(window.substring(0, window.length() - 1));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid window: " + window);
+        }
+        Duration duration = switch (window.charAt(window.length() - 1)) {
+            case 'm' -> Duration.ofMinutes(amount);
+            case 'h' -> Duration.ofHours(amount);
+            case 'd' -> Duration.ofDays(amount);
+            default -> throw new IllegalArgumentException("Invalid window: " + window);
+        };
+        if (duration.isNegative() || duration.isZero() || duration.compareTo(this.hourRetention) > 0) {
+            throw new IllegalArgumentException("Window must be between 1m and " + this.hourRetention + ": " + window);
+        }
+        return duration;
+    }
+
+}
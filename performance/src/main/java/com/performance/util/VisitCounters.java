@@ -0,0 +1,209 @@
+package com.performance.util;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Visit counts per product id for one flush window, without boxing or any allocation per visit.
+ *
+ *  - Striped: N open-addressing int → long tables, each behind its own lock.
+ *    A thread always counts on the same stripe, so a hot product is spread over the stripes
+ *    instead of every thread contending on one counter.
+ *  - swap() installs empty tables (recycled from the previous swap) and merges the old ones into one window:
+ *    each visit is counted in exactly one window.
+ *  - Bounded: a table tracks at most maxProducts distinct ids, visits of further ids are dropped and counted.
+ */
+public class VisitCounters {
+
+    private final Stripe[] stripes;
+    private final int mask;
+    private final int maxProducts;
+    private final LongAdder dropped = new LongAdder();
+
+    // stripes: rounded up to a power of two, 0 = twice the number of cores
+    public VisitCounters(int stripes, int maxProducts) {
+        int count = stripes > 0 ? stripes : 2 * Runtime.getRuntime().availableProcessors();
+        int size = Integer.highestOneBit(Math.max(1, count - 1)) << 1;
+        this.stripes = new Stripe[size];
+        for (int i = 0; i < size; i++) {
+            this.stripes[i] = new Stripe(maxProducts);
+        }
+        this.mask = size - 1;
+        this.maxProducts = maxProducts;
+    }
+
+    public void increment(int productId){
+        Stripe stripe = this.stripes[mix((int) Thread.currentThread().getId()) & this.mask];
+        if (!stripe.increment(productId)) {
+            this.dropped.increment();
+        }
+    }
+
+    /**
+     * Ends the current window and returns its counts, merged with the carried counts
+     * (a previous window that could not be flushed) if any.
+     */
+    public Counts swap(Counts carried){
+        Counts window = new Counts(64, this.maxProducts);
+        if (carried != null) {
+            this.dropped.add(window.addAll(carried));
+        }
+        for (Stripe stripe : this.stripes) {
+            Counts old = stripe.swap();
+            this.dropped.add(window.addAll(old));
+            old.clear();
+            stripe.recycle(old);
+        }
+        return window;
+    }
+
+    // Merges carried counts into a window swapped out without them, visits that do not fit are dropped
+    public void carry(Counts window, Counts carried){
+        this.dropped.add(window.addAll(carried));
+    }
+
+    public long getDropped(){
+        return this.dropped.sum();
+    }
+
+    private static class Stripe {
+
+        private final int maxProducts;
+        private Counts current;
+        private Counts spare;
+
+        private Stripe(int maxProducts) {
+            this.maxProducts = maxProducts;
+            this.current = new Counts(64, maxProducts);
+        }
+
+        private synchronized boolean increment(int productId){
+            return this.current.add(productId, 1);
+        }
+
+        private synchronized Counts swap(){
+            Counts old = this.current;
+            this.current = this.spare != null ? this.spare : new Counts(64, this.maxProducts);
+            this.spare = null;
+            return old;
+        }
+
+        private synchronized void recycle(Counts counts){
+            this.spare = counts;
+        }
+    }
+
+    // Fibonacci hashing, spreads sequential ids and thread ids over the low bits
+    private static int mix(int value){
+        int h = value * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    @FunctionalInterface
+    public interface CountConsumer {
+        void accept(int productId, long count);
+    }
+
+    /**
+     * Open-addressing int → long table (linear probing, load factor 1/2).
+     * A count is never 0, so a 0 value marks a free slot and no key is reserved.
+     * Not thread-safe: guarded by its stripe, or owned by the flush once swapped out.
+     */
+    public static class Counts {
+
+        private final int maxSize;
+        private int[] keys;
+        private long[] values;
+        private int size;
+        private long total;
+
+        public Counts(int capacity, int maxSize) {
+            int length = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+            this.keys = new int[length];
+            this.values = new long[length];
+            this.maxSize = maxSize;
+        }
+
+        // false when the key is new and the table is full
+        public boolean add(int key, long delta){
+            int slot = slot(this.keys, this.values, key);
+            if (this.values[slot] == 0) {
+                if (this.size >= this.maxSize) {
+                    return false;
+                }
+                if ((this.size + 1) * 2 > this.keys.length) {
+                    grow();
+                    slot = slot(this.keys, this.values, key);
+                }
+                this.keys[slot] = key;
+                this.size++;
+            }
+            this.values[slot] += delta;
+            this.total += delta;
+            return true;
+        }
+
+        // Returns the number of visits that did not fit
+        public long addAll(Counts other){
+            long dropped = 0;
+            for (int i = 0; i < other.keys.length; i++) {
+                if (other.values[i] != 0 && !add(other.keys[i], other.values[i])) {
+                    dropped += other.values[i];
+                }
+            }
+            return dropped;
+        }
+
+        public void forEach(CountConsumer consumer){
+            for (int i = 0; i < this.keys.length; i++) {
+                if (this.values[i] != 0) {
+                    consumer.accept(this.keys[i], this.values[i]);
+                }
+            }
+        }
+
+        public int size(){
+            return this.size;
+        }
+
+        public long total(){
+            return this.total;
+        }
+
+        public boolean isEmpty(){
+            return this.size == 0;
+        }
+
+        // Keeps the arrays, a recycled table does not grow again
+        public void clear(){
+            Arrays.fill(this.values, 0);
+            this.size = 0;
+            this.total = 0;
+        }
+
+        private void grow(){
+            int[] oldKeys = this.keys;
+            long[] oldValues = this.values;
+            this.keys = new int[oldKeys.length * 2];
+            this.values = new long[oldValues.length * 2];
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldValues[i] != 0) {
+                    int slot = slot(this.keys, this.values, oldKeys[i]);
+                    this.keys[slot] = oldKeys[i];
+                    this.values[slot] = oldValues[i];
+                }
+            }
+        }
+
+        // Slot of the key, or the free slot where it goes
+        private static int slot(int[] keys, long[] values, int key){
+            int mask = keys.length - 1;
+            int slot = mix(key) & mask;
+            while (values[slot] != 0 && keys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+    }
+
+}
@@ -0,0 +1,214 @@
+package com.performance.util;
+
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RScript;
+import org.redisson.api.RScriptReactive;
+import org.redisson.api.RStreamReactive;
+import org.redisson.api.RedissonReactiveClient;
+import org.redisson.api.StreamMessageId;
+import org.redisson.api.stream.StreamAddArgs;
+import org.redisson.api.stream.StreamCreateGroupArgs;
+import org.redisson.api.stream.StreamReadGroupArgs;
+import org.redisson.client.codec.StringCodec;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Durable visit ingestion, backed by a Redis stream:
+ *
+ *  - append() adds one entry per micro-batch (XADD): the sorted sets to add to ("key|ttlSeconds,...")
+ *    and the "id:count,id:count" of the window.
+ *    A crash loses at most the visits counted since the last append, not a whole 10 second window.
+ *  - Every node aggregates through one consumer group, each as its own consumer:
+ *    XREADGROUP spreads new entries over the nodes.
+ *  - A batch of entries is applied by one Lua script: per entry XACK, and only if the ack succeeded
+ *    (the entry was still pending) ZINCRBY of its counts, then XDEL. Ack and increments are atomic,
+ *    an entry is counted once even when it is replayed or processed by two nodes.
+ *
+ * Keys: every key the script touches is passed in KEYS (the stream, then the sorted sets of the batch),
+ * an entry refers to its sorted sets by their KEYS index. Redis Cluster requires them to be in one slot,
+ * which the visit keys are not: durable mode assumes a single Redis node (standalone or master/replica).
+ *
+ * Replay:
+ *  - Entries read but not applied (crash, Redis error) stay pending for their consumer,
+ *    they are applied first on its next round (same consumer name after a restart).
+ *  - Entries pending for longer than claimIdle (a node that never came back) are claimed (XAUTOCLAIM)
+ *    by the next node that aggregates.
+ */
+@Slf4j
+public class VisitStream implements AutoCloseable {
+
+    private static final String KEYS = "keys";
+    private static final String COUNTS = "counts";
+
+    // KEYS[1] stream, KEYS[2..] sorted sets, ARGV[1] group, then (entry id, "keyIndex|ttl,...", counts) per entry
+    private static final String APPLY = """
+            local applied = 0
+            for i = 2, #ARGV, 3 do
+                if redis.call('XACK', KEYS[1], ARGV[1], ARGV[i]) == 1 and ARGV[i + 1] ~= '' then
+                    for index, ttl in string.gmatch(ARGV[i + 1], '(%d+)|(%d+)') do
+                        local key = KEYS[tonumber(index)]
+                        for member, score in string.gmatch(ARGV[i + 2], '(%-?%d+):(%d+)') do
+                            redis.call('ZINCRBY', key, score, member)
+                        end
+                        if tonumber(ttl) > 0 then
+                            redis.call('EXPIRE', key, ttl)
+                        end
+                    end
+                    applied = applied + 1
+                end
+                redis.call('XDEL', KEYS[1], ARGV[i])
+            end
+            return applied
+            """;
+
+    private final RStreamReactive<String, String> stream;
+    private final RScriptReactive script;
+    private final String group;
+    private final String consumer;
+    private final int batchSize;
+    private final Duration claimIdle;
+
+    private final LongAdder appended = new LongAdder();
+    private final LongAdder applied = new LongAdder();
+    private final LongAdder duplicates = new LongAdder();
+    private final LongAdder claimed = new LongAdder();
+    private final LongAdder failedRounds = new LongAdder();
+
+    private Disposable aggregator;
+
+    public VisitStream(RedissonReactiveClient client,
+                       String streamName,
+                       String group,
+                       String consumer,
+                       int batchSize,
+                       Duration claimIdle) {
+        this.stream = client.getStream(streamName, StringCodec.INSTANCE);
+        this.script = client.getScript(StringCodec.INSTANCE);
+        this.group = group;
+        this.consumer = consumer;
+        this.batchSize = batchSize;
+        this.claimIdle = claimIdle;
+    }
+
+    public Mono<Void> append(List<VisitBuckets.Bucket> buckets, VisitCounters.Counts window){
+        StringJoiner keys = new StringJoiner(",");
+        buckets.forEach(bucket -> keys.add(bucket.getName() + "|" +
+                (bucket.getTtl() == null ? 0 : bucket.getTtl().toSeconds())));
+        StringJoiner counts = new StringJoiner(",");
+        window.forEach((productId, count) -> counts.add(productId + ":" + count));
+        return this.stream.add(StreamAddArgs.entries(Map.of(KEYS, keys.toString(), COUNTS, counts.toString())))
+                .doOnSuccess(id -> this.appended.increment())
+                .then();
+    }
+
+    // Starts the aggregation rounds of this node
+    public synchronized void start(Duration interval){
+        if (this.aggregator != null) {
+            return;
+        }
+        this.aggregator = this.stream.createGroup(StreamCreateGroupArgs.name(this.group)
+                        .id(StreamMessageId.ALL) // also aggregate entries appended before the group existed
+                        .makeStream())
+                .onErrorResume(e -> Mono.empty()) // BUSYGROUP: the group already exists
+                .thenMany(Flux.interval(interval))
+                .onBackpressureDrop()
+                .concatMap(tick -> aggregate())
+                .subscribe();
+    }
+
+    private Mono<Void> aggregate(){
+        return claim()
+                // Own pending entries first (replay), then the never delivered ones
+                .then(drain(StreamReadGroupArgs.greaterThan(StreamMessageId.ALL)))
+                .then(drain(StreamReadGroupArgs.neverDelivered()))
+                .onErrorResume(e -> {
+                    this.failedRounds.increment();
+                    log.warn("VisitStream - aggregation of {} failed, pending entries are replayed next round",
+                            this.stream.getName(), e);
+                    return Mono.empty();
+                });
+    }
+
+    // Takes over the entries left pending by other consumers for longer than claimIdle
+    private Mono<Void> claim(){
+        return this.stream.autoClaim(this.group, this.consumer,
+                        this.claimIdle.toMillis(), TimeUnit.MILLISECONDS, StreamMessageId.MIN, this.batchSize)
+                .doOnNext(result -> this.claimed.add(result.getMessages().size()))
+                .then();
+    }
+
+    // Applies batches until one is not full
+    private Mono<Void> drain(StreamReadGroupArgs args){
+        return applyBatch(args)
+                .expand(count -> count >= this.batchSize ?
+                        applyBatch(args) :
+                        Mono.empty())
+                .then();
+    }
+
+    private Mono<Integer> applyBatch(StreamReadGroupArgs args){
+        return this.stream.readGroup(this.group, this.consumer, args.count(this.batchSize))
+                .defaultIfEmpty(Map.of())
+                .flatMap(messages -> {
+                    if (messages.isEmpty()) {
+                        return Mono.just(0);
+                    }
+                    // Sorted set name → its KEYS index (1-based, KEYS[1] is the stream)
+                    Map<String, Integer> keyIndexes = new LinkedHashMap<>();
+                    List<Object> values = new ArrayList<>(1 + 3 * messages.size());
+                    values.add(this.group);
+                    messages.forEach((id, fields) -> {
+                        StringJoiner indexes = new StringJoiner(",");
+                        for (String bucket : fields.getOrDefault(KEYS, "").split(",")) {
+                            int separator = bucket.lastIndexOf('|');
+                            if (separator > 0) {
+                                int index = keyIndexes.computeIfAbsent(bucket.substring(0, separator), k -> keyIndexes.size() + 2);
+                                indexes.add(index + bucket.substring(separator));
+                            }
+                        }
+                        values.add(id.toString());
+                        values.add(indexes.toString());
+                        values.add(fields.getOrDefault(COUNTS, ""));
+                    });
+                    List<Object> keys = new ArrayList<>(1 + keyIndexes.size());
+                    keys.add(this.stream.getName());
+                    keys.addAll(keyIndexes.keySet());
+                    return this.script.<Long>eval(RScript.Mode.READ_WRITE, APPLY, RScript.ReturnType.INTEGER,
+                                    keys, values.toArray())
+                            .doOnNext(count -> {
+                                this.applied.add(count);
+                                this.duplicates.add(messages.size() - count);
+                            })
+                            .thenReturn(messages.size());
+                });
+    }
+
+    public Map<String, Number> getStats(){
+        Map<String, Number> stats = new LinkedHashMap<>();
+        stats.put("stream.appended", this.appended.sum());
+        stats.put("stream.applied", this.applied.sum());
+        stats.put("stream.duplicates", this.duplicates.sum());
+        stats.put("stream.claimed", this.claimed.sum());
+        stats.put("stream.failed-rounds", this.failedRounds.sum());
+        return stats;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (this.aggregator != null) {
+            this.aggregator.dispose();
+        }
+    }
+
+}
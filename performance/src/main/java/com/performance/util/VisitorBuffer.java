@@ -0,0 +1,67 @@
+package com.performance.util;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Distinct (product, client) pairs seen during one flush window, sent to the per-product HyperLogLogs by the flush.
+ *
+ *  - A client visiting the same product many times in a window is kept once (one PFADD member, not one per visit).
+ *  - Bounded: at most maxPairs pairs per window, further pairs are dropped and counted.
+ *  - swap() takes the write lock, so a pair added during a swap lands in exactly one window.
+ */
+public class VisitorBuffer {
+
+    private final int maxPairs;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final AtomicInteger size = new AtomicInteger();
+    private final LongAdder dropped = new LongAdder();
+    private Map<Integer, Set<String>> current = new ConcurrentHashMap<>();
+
+    public VisitorBuffer(int maxPairs) {
+        this.maxPairs = maxPairs;
+    }
+
+    public void add(int productId, String clientId){
+        this.lock.readLock().lock();
+        try {
+            if (this.size.get() >= this.maxPairs) {
+                this.dropped.increment();
+                return;
+            }
+            if (this.current.computeIfAbsent(productId, k -> ConcurrentHashMap.newKeySet()).add(clientId)) {
+                this.size.incrementAndGet();
+            }
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    // Ends the current window, product id → its distinct clients
+    public Map<Integer, Set<String>> swap(){
+        this.lock.writeLock().lock();
+        try {
+            Map<Integer, Set<String>> window = this.current;
+            this.current = new ConcurrentHashMap<>();
+            this.size.set(0);
+            return window;
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    // Puts back a window that could not be written, PFADD is idempotent so it is simply sent again with the next one
+    public void carry(Map<Integer, Set<String>> window){
+        window.forEach((productId, clients) -> clients.forEach(clientId -> add(productId, clientId)));
+    }
+
+    public long getDropped(){
+        return this.dropped.sum();
+    }
+
+}
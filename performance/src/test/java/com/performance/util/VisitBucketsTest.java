@@ -0,0 +1,98 @@
+package com.performance.util;
+
+import com.performance.config.ProductVisitProperties;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+public class VisitBucketsTest {
+
+    // Minute buckets up to 2h, hour buckets up to 48h
+    private final VisitBuckets buckets = new VisitBuckets(new ProductVisitProperties());
+
+    @Test
+    public void parse(){
+        Assertions.assertEquals(Duration.ofMinutes(5), this.buckets.parse("5m"));
+        Assertions.assertEquals(Duration.ofMinutes(90), this.buckets.parse("90m"));
+        Assertions.assertEquals(Duration.ofHours(24), this.buckets.parse("24h"));
+        Assertions.assertEquals(Duration.ofDays(2), this.buckets.parse("2d"));
+        Assertions.assertEquals(this.buckets.parse("60m"), this.buckets.parse("1h"));
+    }
+
+    @Test
+    public void parseRejectsInvalidWindows(){
+        for (String window : new String[]{null, "", "m", "5", "5s", "xm", "0m", "-5m", "49h", "3d"}) {
+            Assertions.assertThrows(IllegalArgumentException.class, () -> this.buckets.parse(window), "window " + window);
+        }
+    }
+
+    @Test
+    public void minuteWindowAcrossAnHourBoundary(){
+        List<String> keys = this.buckets.windowKeys("5m", LocalDateTime.of(2026, 3, 1, 10, 2, 30));
+        Assertions.assertEquals(List.of(
+                "product:visit:m:202603011002",
+                "product:visit:m:202603011001",
+                "product:visit:m:202603011000",
+                "product:visit:m:202603010959",
+                "product:visit:m:202603010958"), keys);
+    }
+
+    @Test
+    public void minuteWindowAtTheMinuteRetention(){
+        LocalDateTime now = LocalDateTime.of(2026, 3, 1, 0, 30, 59);
+        List<String> keys = this.buckets.windowKeys("2h", now);
+        Assertions.assertEquals(120, keys.size());
+        Assertions.assertEquals("product:visit:m:202603010030", keys.get(0));
+        // Across midnight
+        Assertions.assertEquals("product:visit:m:202602282231", keys.get(119));
+    }
+
+    @Test
+    public void hourWindowAcrossADayBoundary(){
+        List<String> keys = this.buckets.windowKeys("3h", LocalDateTime.of(2026, 3, 1, 1, 15));
+        Assertions.assertEquals(List.of(
+                "product:visit:h:2026030101",
+                "product:visit:h:2026030100",
+                "product:visit:h:2026022823"), keys);
+    }
+
+    @Test
+    public void partialHoursRoundUp(){
+        // 150 minutes cover 3 hour buckets, the current one included
+        List<String> keys = this.buckets.windowKeys("150m", LocalDateTime.of(2026, 3, 1, 12, 0));
+        Assertions.assertEquals(List.of(
+                "product:visit:h:2026030112",
+                "product:visit:h:2026030111",
+                "product:visit:h:2026030110"), keys);
+    }
+
+    @Test
+    public void todayIsTheDayKey(){
+        LocalDateTime now = LocalDateTime.of(2026, 3, 1, 23, 59, 59);
+        Assertions.assertEquals(List.of(VisitBuckets.dayKey(now.toLocalDate())),
+                this.buckets.windowKeys(VisitBuckets.TODAY, now));
+    }
+
+    @Test
+    public void dayKeysUseTheCalendarYear(){
+        // 2024-12-30 is in week 1 of 2025, the week-based year would name it 20251230
+        Assertions.assertEquals("product:visit:20241230", VisitBuckets.dayKey(LocalDate.of(2024, 12, 30)));
+        Assertions.assertEquals("product:visit:20270101", VisitBuckets.dayKey(LocalDate.of(2027, 1, 1)));
+    }
+
+    @Test
+    public void bucketsAtTheLastMinuteOfADay(){
+        List<VisitBuckets.Bucket> at = this.buckets.bucketsAt(LocalDateTime.of(2026, 2, 28, 23, 59, 59));
+        Assertions.assertEquals(3, at.size());
+        Assertions.assertEquals("product:visit:m:202602282359", at.get(1).getName());
+        Assertions.assertEquals(Duration.ofHours(2), at.get(1).getTtl());
+        Assertions.assertEquals("product:visit:h:2026022823", at.get(2).getName());
+        Assertions.assertEquals(Duration.ofHours(48), at.get(2).getTtl());
+        Assertions.assertNull(at.get(0).getTtl());
+    }
+
+}
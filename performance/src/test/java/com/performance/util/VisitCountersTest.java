@@ -0,0 +1,113 @@
+package com.performance.util;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class VisitCountersTest {
+
+    private static Map<Integer, Long> toMap(VisitCounters.Counts counts){
+        Map<Integer, Long> map = new HashMap<>();
+        counts.forEach(map::put);
+        return map;
+    }
+
+    @Test
+    public void swapReturnsTheWindowAndStartsANewOne(){
+        VisitCounters counters = new VisitCounters(4, 100);
+        counters.increment(1);
+        counters.increment(1);
+        counters.increment(2);
+
+        VisitCounters.Counts window = counters.swap(null);
+        Assertions.assertEquals(Map.of(1, 2L, 2, 1L), toMap(window));
+        Assertions.assertEquals(3, window.total());
+
+        Assertions.assertTrue(counters.swap(null).isEmpty());
+    }
+
+    @Test
+    public void carriedCountsAreMergedIntoTheNextWindow(){
+        VisitCounters counters = new VisitCounters(4, 100);
+        counters.increment(1);
+        VisitCounters.Counts failed = counters.swap(null);
+
+        counters.increment(1);
+        counters.increment(3);
+        VisitCounters.Counts window = counters.swap(failed);
+        Assertions.assertEquals(Map.of(1, 2L, 3, 1L), toMap(window));
+
+        VisitCounters.Counts next = counters.swap(null);
+        counters.carry(next, window);
+        Assertions.assertEquals(Map.of(1, 2L, 3, 1L), toMap(next));
+        Assertions.assertEquals(0, counters.getDropped());
+    }
+
+    @Test
+    public void visitsOfFurtherProductsAreDropped(){
+        VisitCounters counters = new VisitCounters(1, 2);
+        counters.increment(1);
+        counters.increment(2);
+        counters.increment(3);
+        counters.increment(3);
+
+        Assertions.assertEquals(Map.of(1, 1L, 2, 1L), toMap(counters.swap(null)));
+        Assertions.assertEquals(2, counters.getDropped());
+    }
+
+    @Test
+    public void concurrentSwapsLoseNoVisit() throws InterruptedException {
+        VisitCounters counters = new VisitCounters(0, 10_000);
+        int threads = 8;
+        int visits = 100_000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            executor.execute(() -> {
+                for (int i = 0; i < visits; i++) {
+                    counters.increment(i % 1000);
+                }
+                done.countDown();
+            });
+        }
+
+        // Swaps while the threads count, as the flush does
+        List<VisitCounters.Counts> windows = new ArrayList<>();
+        AtomicBoolean finished = new AtomicBoolean();
+        while (!finished.get()) {
+            finished.set(done.await(1, TimeUnit.MILLISECONDS));
+            windows.add(counters.swap(null));
+        }
+        windows.add(counters.swap(null));
+        executor.shutdown();
+
+        Map<Integer, Long> total = new HashMap<>();
+        windows.forEach(window -> window.forEach((id, count) -> total.merge(id, count, Long::sum)));
+        Assertions.assertEquals(1000, total.size());
+        total.values().forEach(count -> Assertions.assertEquals((long) threads * visits / 1000, count));
+        Assertions.assertEquals(0, counters.getDropped());
+    }
+
+    @Test
+    public void countsGrowPastTheirInitialCapacity(){
+        VisitCounters.Counts counts = new VisitCounters.Counts(2, 1000);
+        for (int id = 0; id < 500; id++) {
+            Assertions.assertTrue(counts.add(id, id + 1));
+        }
+        Assertions.assertEquals(500, counts.size());
+        Map<Integer, Long> map = toMap(counts);
+        for (int id = 0; id < 500; id++) {
+            Assertions.assertEquals((long) id + 1, map.get(id));
+        }
+    }
+
+}